@@ -77,6 +77,10 @@ public enum APIError {
         HttpStatus.REQUEST_TIMEOUT,
         "Timed out",
         "The operation exceeded the maximum time allowed for its execution."
+    ), TOO_MANY_REQUESTS(
+        HttpStatus.TOO_MANY_REQUESTS,
+        "Too many requests",
+        "The server is busy. Please try again later."
     ), EXTERNAL_API_ERROR(
         HttpStatus.BAD_GATEWAY,
         "Error de servicio externo",
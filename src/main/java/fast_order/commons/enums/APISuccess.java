@@ -28,6 +28,13 @@ public enum APISuccess {
      * * Typical use: POST operations
      */
     RESOURCE_CREATED("Resource created successful.", HttpStatus.CREATED),
+    /**
+     * Success response for requests accepted for asynchronous processing.
+     * *
+     * * HTTP Status: 202 Accepted
+     * * Typical use: POST operations processed in background
+     */
+    RESOURCE_ACCEPTED("Resource accepted for processing.", HttpStatus.ACCEPTED),
     /**
      * Success response for resource update operations.
      * *
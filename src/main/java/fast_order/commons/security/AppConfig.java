@@ -4,6 +4,8 @@ import fast_order.commons.enums.APIError;
 import fast_order.entity.UserEntity;
 import fast_order.exception.APIRequestException;
 import fast_order.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -12,52 +14,55 @@ import org.springframework.security.authentication.dao.DaoAuthenticationProvider
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.User;
-import org.springframework.security.core.userdetails.UserDetailsService;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
+import java.time.Duration;
 import java.util.Optional;
 
 @Configuration
 public class AppConfig {
+    private static final String ROLE_PREFIX = "ROLE_";
+    
     private final UserRepository userRepository;
     
     public AppConfig(UserRepository userRepository) {
         this.userRepository = userRepository;
     }
     
+    /**
+     * Users of the authenticated requests, cached (see {@link CachedUserDetailsService}).
+     */
     @Bean
-    public UserDetailsService userDetailsService() {
-        final String ROLE_PREFIX = "ROLE_";
-        
-        return (username) -> {
-            Optional<UserEntity> response = userRepository.findUserByEmail(username.toLowerCase());
-            
-            if (response.isEmpty()) {
-                APIError.RECORD_NOT_FOUND.setTitle("Usuario no encontrado");
-                APIError.RECORD_NOT_FOUND.setMessage("El usuario que estas buscando no existe.");
-                
-                throw new APIRequestException(APIError.RECORD_NOT_FOUND);
-            }
-            
-            UserEntity existingUser = response.get();
-            String roleName = ROLE_PREFIX + existingUser.getRole().getRoleName();
-            
-            SimpleGrantedAuthority role = new SimpleGrantedAuthority(roleName);
+    public CachedUserDetailsService userDetailsService(
+        MeterRegistry meterRegistry,
+        @Value("${user.details-cache.max-size}") Long maxSize,
+        @Value("${user.details-cache.ttl}") Duration ttl
+    )
+    {
+        return new CachedUserDetailsService(this::findUser, meterRegistry, maxSize, ttl);
+    }
+    
+    /*
+     * Logins check the password against the database, never against a cached user. Hashes stored
+     * with another cost than the current one are replaced once the login succeeds.
+     */
+    @Bean
+    public AuthenticationProvider authenticationProvider(PasswordEncoder passwordEncoder) {
+        DaoAuthenticationProvider daoAuthProvider = new DaoAuthenticationProvider();
+        daoAuthProvider.setUserDetailsService((username) -> {
+            UserEntity existingUser = this.findUser(username.toLowerCase());
             
             return User.builder()
                        .username(existingUser.getEmail())
                        .password(existingUser.getPassword())
-                       .authorities(role)
+                       .authorities(authority(existingUser))
                        .build();
-        };
-    }
-    
-    @Bean
-    public AuthenticationProvider authenticationProvider() {
-        DaoAuthenticationProvider daoAuthProvider = new DaoAuthenticationProvider();
-        daoAuthProvider.setUserDetailsService(this.userDetailsService());
-        daoAuthProvider.setPasswordEncoder(this.passwordEncoder());
+        });
+        daoAuthProvider.setPasswordEncoder(passwordEncoder);
+        daoAuthProvider.setUserDetailsPasswordService((user, newPassword) -> {
+            userRepository.updatePassword(user.getUsername(), newPassword);
+            return User.withUserDetails(user).password(newPassword).build();
+        });
         return daoAuthProvider;
     }
     
@@ -68,8 +73,45 @@ public class AppConfig {
         return authConfig.getAuthenticationManager();
     }
     
+    /**
+     * BCrypt on a bounded pool, with a calibrated cost (see {@link BoundedPasswordEncoder}).
+     */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(
+        MeterRegistry meterRegistry,
+        @Value("${password.hash.workers}") Integer workers,
+        @Value("${password.hash.queue-capacity}") Integer queueCapacity,
+        @Value("${password.hash.cost:}") Integer cost,
+        @Value("${password.hash.target-time}") Duration targetTime,
+        @Value("${password.hash.min-cost}") Integer minCost,
+        @Value("${password.hash.max-cost}") Integer maxCost
+    )
+    {
+        return new BoundedPasswordEncoder(
+            meterRegistry,
+            workers,
+            queueCapacity,
+            cost,
+            targetTime,
+            minCost,
+            maxCost
+        );
+    }
+    
+    static SimpleGrantedAuthority authority(UserEntity user) {
+        return new SimpleGrantedAuthority(ROLE_PREFIX + user.getRole().getRoleName());
+    }
+    
+    private UserEntity findUser(String email) {
+        Optional<UserEntity> response = userRepository.findUserByEmail(email);
+        
+        if (response.isEmpty()) {
+            APIError.RECORD_NOT_FOUND.setTitle("Usuario no encontrado");
+            APIError.RECORD_NOT_FOUND.setMessage("El usuario que estas buscando no existe.");
+            
+            throw new APIRequestException(APIError.RECORD_NOT_FOUND);
+        }
+        
+        return response.get();
     }
 }
@@ -0,0 +1,170 @@
+package fast_order.commons.security;
+
+import fast_order.commons.enums.APIError;
+import fast_order.exception.APIRequestException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * BCrypt {@link PasswordEncoder} running on a bounded pool of threads.
+ * -
+ * Hashing is CPU bound and slow by design, so a burst of logins or registrations on Tomcat threads
+ * would take every core from the rest of the traffic. Here at most {@code password.hash.workers}
+ * passwords are hashed at once; callers wait for their turn in a queue of
+ * {@code password.hash.queue-capacity}, and get 429 when it is full.
+ * -
+ * The cost factor is {@code password.hash.cost} or, when empty, calibrated at startup so a hash
+ * takes about {@code password.hash.target-time} on this hardware, within
+ * {@code password.hash.min-cost} and {@code password.hash.max-cost}. Hashes stored with another
+ * cost are reported by {@link #upgradeEncoding(String)}, so they are rehashed at the next login.
+ * Instances calibrating to different costs would rehash back and forth; pin the cost when the
+ * hardware differs.
+ * *
+ * Hashing time is published under the {@code password.hash} timer (tag {@code operation}) and the
+ * queue size under {@code password.hash.queue.size}.
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BoundedPasswordEncoder.class);
+    private static final int PROBE_COST = 8;
+    
+    private final int cost;
+    private final BCryptPasswordEncoder encoder;
+    private final ThreadPoolExecutor workers;
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+    
+    /**
+     * @param fixedCost Cost factor to use, or null to calibrate it.
+     */
+    public BoundedPasswordEncoder(
+        MeterRegistry meterRegistry,
+        Integer workerCount,
+        Integer queueCapacity,
+        Integer fixedCost,
+        Duration targetTime,
+        Integer minCost,
+        Integer maxCost
+    )
+    {
+        this.cost = fixedCost != null ? fixedCost : calibrate(targetTime, minCost, maxCost);
+        this.encoder = new BCryptPasswordEncoder(cost);
+        
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(
+            workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            (runnable) -> {
+                String name = "password-hasher-" + threadNumber.incrementAndGet();
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.AbortPolicy()
+        );
+        
+        this.encodeTimer = Timer.builder("password.hash")
+                                .description("Time to hash a password")
+                                .tag("operation", "encode")
+                                .register(meterRegistry);
+        this.matchesTimer = Timer.builder("password.hash")
+                                 .description("Time to hash a password")
+                                 .tag("operation", "matches")
+                                 .register(meterRegistry);
+        Gauge.builder("password.hash.queue.size", workers, (pool) -> pool.getQueue().size())
+             .description("Passwords waiting to be hashed")
+             .register(meterRegistry);
+        
+        LOGGER.info("Passwords are hashed with BCrypt cost {}", cost);
+    }
+    
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return this.run(encodeTimer, () -> encoder.encode(rawPassword));
+    }
+    
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return this.run(matchesTimer, () -> encoder.matches(rawPassword, encodedPassword));
+    }
+    
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        int storedCost = costOf(encodedPassword);
+        return storedCost > 0 && storedCost != cost;
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+    
+    private <T> T run(Timer timer, Callable<T> hashing) {
+        Future<T> result;
+        try {
+            result = workers.submit(() -> timer.recordCallable(hashing));
+        } catch (RejectedExecutionException ex) {
+            APIError.TOO_MANY_REQUESTS.setTitle("Too many logins");
+            APIError.TOO_MANY_REQUESTS.setMessage(
+                "Too many passwords are waiting to be checked. Please try again later.");
+            throw new APIRequestException(APIError.TOO_MANY_REQUESTS);
+        }
+        
+        try {
+            return result.get();
+        } catch (InterruptedException ex) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new APIRequestException(APIError.INTERNAL_SERVER_ERROR);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) throw cause;
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+    
+    /*
+     * Times a cheap hash and extrapolates: each cost step doubles the work. The best of a few runs
+     * is kept, the first ones being slowed down by the JIT.
+     */
+    private static int calibrate(Duration targetTime, int minCost, int maxCost) {
+        BCryptPasswordEncoder probe = new BCryptPasswordEncoder(PROBE_COST);
+        long probeNanos = Long.MAX_VALUE;
+        
+        for (int i = 0; i < 5; i++) {
+            long start = System.nanoTime();
+            probe.encode("calibration");
+            probeNanos = Math.min(probeNanos, Math.max(System.nanoTime() - start, 1));
+        }
+        
+        double steps = Math.log((double) targetTime.toNanos() / probeNanos) / Math.log(2);
+        return Math.max(minCost, Math.min(maxCost, PROBE_COST + (int) Math.round(steps)));
+    }
+    
+    /*
+     * Cost of a BCrypt hash ($2a$10$...), or -1 if it is not one.
+     */
+    private static int costOf(String encodedPassword) {
+        if (encodedPassword == null || encodedPassword.length() < 7) return -1;
+        
+        try {
+            return Integer.parseInt(encodedPassword.substring(4, 6));
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package fast_order.commons.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import fast_order.entity.UserEntity;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * {@link UserDetailsService} of the authenticated requests, caching the users by email.
+ * -
+ * Bounded by {@code user.details-cache.max-size}; entries expire after
+ * {@code user.details-cache.ttl}. A user is evicted as soon as its tokens are revoked
+ * ({@link TokensRevokedEvent}), which happens when its email, role or password changes or it is
+ * deleted, on this instance or on another one (read every
+ * {@code jwt.revocation.refresh-interval-ms}). Hits, misses and evictions are published under the
+ * {@code cache.*} meters with {@code cache=user-details}.
+ * -
+ * Cached users carry no password, so this service must not be used to check credentials.
+ */
+public class CachedUserDetailsService implements UserDetailsService {
+    private final Function<String, UserEntity> loader;
+    private final Cache<String, CachedUser> users;
+    
+    /**
+     * @param loader Reads the user by its lowercase email, throwing if it does not exist.
+     */
+    public CachedUserDetailsService(
+        Function<String, UserEntity> loader,
+        MeterRegistry meterRegistry,
+        Long maxSize,
+        Duration ttl
+    )
+    {
+        this.loader = loader;
+        this.users = Caffeine.newBuilder()
+                             .maximumSize(maxSize)
+                             .expireAfterWrite(ttl)
+                             .recordStats()
+                             .build();
+        
+        CaffeineCacheMetrics.monitor(meterRegistry, users, "user-details");
+    }
+    
+    @Override
+    public UserDetails loadUserByUsername(String username) {
+        return users.get(username.toLowerCase(), this::load).details();
+    }
+    
+    @EventListener
+    public void onTokensRevoked(TokensRevokedEvent event) {
+        // The email may have changed, so the entry is found by user ID. Revocations are rare.
+        users.asMap().values().removeIf((user) -> user.userId().equals(event.userId()));
+    }
+    
+    private CachedUser load(String email) {
+        UserEntity user = loader.apply(email);
+        UserDetails details = User.builder()
+                                  .username(user.getEmail())
+                                  .password("")
+                                  .authorities(AppConfig.authority(user))
+                                  .build();
+        
+        return new CachedUser(user.getId(), details);
+    }
+    
+    private record CachedUser(UUID userId, UserDetails details) {
+    }
+}
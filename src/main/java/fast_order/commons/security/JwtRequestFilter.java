@@ -2,14 +2,17 @@ package fast_order.commons.security;
 
 import fast_order.commons.enums.APIError;
 import fast_order.exception.APIRequestException;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
@@ -17,15 +20,36 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.UUID;
 
+/**
+ * Authenticates requests carrying a {@code Bearer} JWT.
+ * -
+ * With {@code jwt.stateless.enabled} the user is built from the verified claims of the token
+ * (email, role, user ID and token version) and only checked against the in-memory revocations of
+ * {@link TokenRevocationService}, so authenticating costs no database query. Tokens issued before
+ * those claims existed, or with the mode disabled, load the user from the database.
+ * -
+ * The token is parsed and verified once per request; the claims are reused for every check.
+ */
 @Component
 public class JwtRequestFilter extends OncePerRequestFilter {
     private final UserDetailsService userDetailsService;
     private final JwtUtil jwtUtil;
+    private final TokenRevocationService tokenRevocation;
     
-    public JwtRequestFilter(UserDetailsService userDetailsService, JwtUtil jwtUtil) {
+    @Value("${jwt.stateless.enabled}")
+    private Boolean stateless;
+    
+    public JwtRequestFilter(
+        UserDetailsService userDetailsService,
+        JwtUtil jwtUtil,
+        TokenRevocationService tokenRevocation
+    )
+    {
         this.userDetailsService = userDetailsService;
         this.jwtUtil = jwtUtil;
+        this.tokenRevocation = tokenRevocation;
     }
     
     @Override
@@ -40,34 +64,38 @@ public class JwtRequestFilter extends OncePerRequestFilter {
             return;
         }
         
-        String token = null;
+        Claims claims = null;
         String email = null;
         
         final String BEARER_PREFIX = "Bearer ";
         final String AUTHORIZATION_HEADER = request.getHeader(HttpHeaders.AUTHORIZATION);
         
         if (AUTHORIZATION_HEADER != null && AUTHORIZATION_HEADER.startsWith(BEARER_PREFIX)) {
-            token = AUTHORIZATION_HEADER.substring(BEARER_PREFIX.length());
-            email = jwtUtil.extractUsername(token);
+            String token = AUTHORIZATION_HEADER.substring(BEARER_PREFIX.length());
+            claims = jwtUtil.extractAllClaims(token);
+            email = claims.getSubject();
         }
         
         try {
             if (email != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                UserDetails userDetails = userDetailsService.loadUserByUsername(email);
+                UserDetails userDetails = stateless ? this.userFromClaims(claims) : null;
                 
-                if (jwtUtil.validateToken(token, userDetails)) {
-                    UsernamePasswordAuthenticationToken
-                        auth =
-                        new UsernamePasswordAuthenticationToken(
-                            userDetails,
-                                                                null,
-                                                                userDetails.getAuthorities()
-                        );
-                    auth.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                    SecurityContextHolder.getContext().setAuthentication(auth);
-                } else {
-                    throw new APIRequestException(APIError.UNAUTHORIZED);
+                if (userDetails == null) {
+                    userDetails = userDetailsService.loadUserByUsername(email);
+                    if (!jwtUtil.validateToken(claims, userDetails)) {
+                        throw new APIRequestException(APIError.UNAUTHORIZED);
+                    }
                 }
+                
+                UsernamePasswordAuthenticationToken
+                    auth =
+                    new UsernamePasswordAuthenticationToken(
+                        userDetails,
+                        null,
+                        userDetails.getAuthorities()
+                    );
+                auth.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                SecurityContextHolder.getContext().setAuthentication(auth);
             }
             filterChain.doFilter(request, response);
         } catch (APIRequestException ex) {
@@ -75,6 +103,27 @@ public class JwtRequestFilter extends OncePerRequestFilter {
         }
     }
     
+    /*
+     * The signature and expiration were verified when parsing, so the claims are trusted as they
+     * are. Null when the token lacks the claims needed (issued before they were added).
+     */
+    private UserDetails userFromClaims(Claims claims) {
+        String role = claims.get(JwtUtil.ROLE_CLAIM, String.class);
+        String userId = claims.get(JwtUtil.USER_ID_CLAIM, String.class);
+        Number tokenVersion = claims.get(JwtUtil.TOKEN_VERSION_CLAIM, Number.class);
+        
+        if (role == null || userId == null || tokenVersion == null) return null;
+        
+        if (tokenRevocation.isRevoked(UUID.fromString(userId), tokenVersion.longValue())) {
+            throw new APIRequestException(APIError.UNAUTHORIZED);
+        }
+        
+        return User.withUsername(claims.getSubject())
+                   .password("")
+                   .authorities(role)
+                   .build();
+    }
+    
     private boolean isAuthPath(HttpServletRequest request) {
         String servletPath = request.getServletPath();
         return servletPath.contains("/auth/login") ||
@@ -5,44 +5,76 @@ import fast_order.dto.UserTO;
 import fast_order.commons.enums.APIError;
 import fast_order.exception.APIRequestException;
 import fast_order.service.RoleService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
+/**
+ * Issues and verifies the JWTs of the API.
+ * -
+ * The signing key and the parser are built once. Verified claims are cached by the SHA-256 of the
+ * token (the tokens themselves are not kept) until the token expires, bounded by
+ * {@code jwt.claims-cache.max-size}, so a client sending the same token on every request pays the
+ * signature check and JSON parsing once. Hits and misses are published under the {@code cache.*}
+ * meters with {@code cache=jwt-claims}.
+ */
 @Component
 public class JwtUtil {
-    @Value("${jwt.secret.key}")
-    private String SECRET_KEY;
+    public static final String ROLE_CLAIM = "role";
+    public static final String USER_ID_CLAIM = "uid";
+    public static final String TOKEN_VERSION_CLAIM = "tv";
     
-    @Value("${jwt.time.expiration}")
-    private Long TIME_EXPIRATION;
+    private final Long TIME_EXPIRATION;
     
     private final RoleService roleService;
+    private final SecretKey key;
+    private final JwtParser parser;
+    private final Cache<String, Claims> verifiedClaims;
     
-    public JwtUtil(RoleService roleService) {
+    public JwtUtil(
+        RoleService roleService,
+        MeterRegistry meterRegistry,
+        @Value("${jwt.secret.key}") String secretKey,
+        @Value("${jwt.time.expiration}") Long timeExpiration,
+        @Value("${jwt.claims-cache.max-size}") Long claimsCacheSize
+    )
+    {
         this.roleService = roleService;
+        this.TIME_EXPIRATION = timeExpiration;
+        this.key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secretKey));
+        this.parser = Jwts.parser().verifyWith(key).build();
+        this.verifiedClaims = Caffeine.newBuilder()
+                                      .maximumSize(claimsCacheSize)
+                                      .expireAfter(new UntilTokenExpiration())
+                                      .recordStats()
+                                      .build();
+        
+        CaffeineCacheMetrics.monitor(meterRegistry, verifiedClaims, "jwt-claims");
     }
     
     public String extractUsername(String token) {
-        if (token == null || token.isEmpty()) {
-            throw new APIRequestException(
-                APIError.UNAUTHORIZED,
-                                          "Token requerido",
-                                          "El token esta vacío."
-            );
-        }
-        
         return this.extractClaim(token, Claims::getSubject);
     }
     
@@ -55,26 +87,46 @@ public class JwtUtil {
         return claimsResolver.apply(claims);
     }
     
-    private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                   .verifyWith(this.getKey())
-                   .build()
-                   .parseSignedClaims(token)
-                   .getPayload();
+    /**
+     * Claims of the token, once its signature and expiration are verified. Cached until the token
+     * expires; invalid tokens are not cached and fail every time.
+     * @throws io.jsonwebtoken.JwtException If the token is malformed, forged or expired.
+     */
+    public Claims extractAllClaims(String token) {
+        if (token == null || token.isEmpty()) {
+            throw new APIRequestException(
+                APIError.UNAUTHORIZED,
+                                          "Token requerido",
+                                          "El token esta vacío."
+            );
+        }
+        
+        return verifiedClaims.get(
+            sha256(token),
+            (hash) -> parser.parseSignedClaims(token).getPayload()
+        );
     }
     
     public boolean isTokenExpired(String token) {
         return this.extractExpiration(token).before(new Date());
     }
     
-    public String generateToken(UserTO userTO) {
+    /**
+     * Token for the user. Besides the role, it carries the user ID and token version, which let
+     * {@link JwtRequestFilter} authenticate requests without loading the user.
+     * @param userTO Authenticated user.
+     * @param tokenVersion Current token version of the user.
+     */
+    public String generateToken(UserTO userTO, Long tokenVersion) {
         final String ROLE_PREFIX = "ROLE_";
         String roleName = this.getRoleById(userTO.getRoleId());
         
         Map<String, Object> claims = new HashMap<>();
         claims.put("name", userTO.getName());
         claims.put("email", userTO.getEmail());
-        claims.put("role", ROLE_PREFIX + roleName);
+        claims.put(ROLE_CLAIM, ROLE_PREFIX + roleName);
+        claims.put(USER_ID_CLAIM, userTO.getId().toString());
+        claims.put(TOKEN_VERSION_CLAIM, tokenVersion);
         return this.buildToken(claims, userTO.getEmail());
     }
     
@@ -87,22 +139,67 @@ public class JwtUtil {
                    .subject(subject)
                    .issuedAt(time)
                    .expiration(expiration)
-                   .signWith(this.getKey(), Jwts.SIG.HS256)
+                   .signWith(key, Jwts.SIG.HS256)
                    .compact();
     }
     
-    public boolean validateToken(String token, UserDetails userDetails) {
-        final String username = this.extractUsername(token);
-        return (username.equals(userDetails.getUsername()) && !this.isTokenExpired(token));
-    }
-    
-    private SecretKey getKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(SECRET_KEY);
-        return Keys.hmacShaKeyFor(keyBytes);
+    /**
+     * Whether already verified claims belong to the user and have not expired since.
+     */
+    public boolean validateToken(Claims claims, UserDetails userDetails) {
+        return claims.getSubject().equals(userDetails.getUsername()) &&
+            !claims.getExpiration().before(new Date());
     }
     
     public String getRoleById(UUID id) {
         RoleTO role = roleService.findRoleById(id);
         return role.getRoleName().name();
     }
+    
+    private static String sha256(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                                         .digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException ex) {
+            // Every Java platform is required to provide SHA-256.
+            throw new IllegalStateException(ex);
+        }
+    }
+    
+    /*
+     * Each entry lives until the expiration of its token, so an expired token is parsed again and
+     * rejected by the parser.
+     */
+    private static final class UntilTokenExpiration implements Expiry<String, Claims> {
+        @Override
+        public long expireAfterCreate(String hash, Claims claims, long currentTime) {
+            if (claims.getExpiration() == null) return 0;
+            
+            long remainingMs = claims.getExpiration().getTime() - System.currentTimeMillis();
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(remainingMs, 0));
+        }
+        
+        @Override
+        public long expireAfterUpdate(
+            String hash,
+            Claims claims,
+            long currentTime,
+            long currentDuration
+        )
+        {
+            return currentDuration;
+        }
+        
+        @Override
+        public long expireAfterRead(
+            String hash,
+            Claims claims,
+            long currentTime,
+            long currentDuration
+        )
+        {
+            return currentDuration;
+        }
+    }
 }
@@ -60,13 +60,19 @@ public class SecurityConfig {
             // Products
             authRequest.requestMatchers(HttpMethod.DELETE, "/products/delete/**").hasAnyRole(
                 ROLE_ADMIN);
+            authRequest.requestMatchers("/products/stock-shards/**", "/products/import").hasAnyRole(
+                ROLE_ADMIN);
             authRequest.requestMatchers(
                 "/products/create",
                 "/products/update/**",
                 "/products/update/price/**",
                 "/products/update/stock/**"
             ).hasAnyRole(ROLE_ADMIN, ROLE_USER);
-            authRequest.requestMatchers("/products/id/**", "/products/all").hasAnyRole(
+            authRequest.requestMatchers(
+                "/products/id/**",
+                "/products/all",
+                "/products/suggest"
+            ).hasAnyRole(
                 ROLE_ADMIN,
                 ROLE_USER,
                 ROLE_INVITED
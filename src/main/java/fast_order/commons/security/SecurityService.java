@@ -3,6 +3,7 @@ package fast_order.commons.security;
 import fast_order.dto.AuthTO;
 import fast_order.dto.TokenResponseTO;
 import fast_order.dto.UserTO;
+import fast_order.exception.APIRequestException;
 import fast_order.service.UserService;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
@@ -38,12 +39,15 @@ public class SecurityService {
             UserDetails userDetails = (UserDetails) authResult.getPrincipal();
             UserTO existingUser = userService.findUserByEmail(userDetails.getUsername());
             
-            String token = jwtUtil.generateToken(existingUser);
+            Long tokenVersion = userService.findTokenVersion(existingUser.getId());
+            String token = jwtUtil.generateToken(existingUser, tokenVersion);
             String role = jwtUtil.getRoleById(existingUser.getRoleId());
             
             return new TokenResponseTO(token, existingUser.getName(), role);
         } catch (BadCredentialsException ex) {
             throw new BadCredentialsException(ex.getMessage());
+        } catch (APIRequestException ex) {
+            throw ex;
         } catch (Exception ex) {
             throw new InternalError(ex.getMessage());
         }
@@ -0,0 +1,150 @@
+package fast_order.commons.security;
+
+import fast_order.entity.TokenRevocationEntity;
+import fast_order.repository.TokenRevocationRepository;
+import fast_order.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Revocation of JWTs for the stateless authentication ({@code jwt.stateless.enabled}).
+ * -
+ * Each token carries the token version of its user. Revoking the tokens of a user raises that
+ * version in {@code USERS} and records the lowest version still accepted in
+ * {@code TOKEN_REVOCATIONS}. Every instance keeps the recent revocations in memory, so checking a
+ * token is a map lookup:
+ * - Revocations made on this instance apply as soon as their transaction commits.
+ * - Those made on other instances are read every {@code jwt.revocation.refresh-interval-ms}.
+ * -
+ * Only revocations younger than {@code jwt.time.expiration} are kept: the tokens they revoke have
+ * expired after that, so the denylist stays small.
+ * -
+ * Every new revocation, local or read from another instance, is published as a
+ * {@link TokensRevokedEvent}.
+ */
+@Service
+public class TokenRevocationService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TokenRevocationService.class);
+    
+    private final Map<UUID, Revocation> revocations = new ConcurrentHashMap<>();
+    
+    private final UserRepository userRepository;
+    private final TokenRevocationRepository tokenRevocationRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration tokenLifetime;
+    private final ApplicationEventPublisher eventPublisher;
+    
+    public TokenRevocationService(
+        UserRepository userRepository,
+        TokenRevocationRepository tokenRevocationRepository,
+        PlatformTransactionManager transactionManager,
+        ApplicationEventPublisher eventPublisher,
+        @Value("${jwt.time.expiration}") Long tokenLifetimeMs
+    )
+    {
+        this.userRepository = userRepository;
+        this.tokenRevocationRepository = tokenRevocationRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.tokenLifetime = Duration.ofMillis(tokenLifetimeMs);
+        this.eventPublisher = eventPublisher;
+    }
+    
+    /**
+     * Whether a token with this version was revoked for the user.
+     * @param userId User ID claim of the token.
+     * @param tokenVersion Token version claim of the token.
+     */
+    public boolean isRevoked(UUID userId, long tokenVersion) {
+        Revocation revocation = revocations.get(userId);
+        return revocation != null && tokenVersion < revocation.minVersion();
+    }
+    
+    /**
+     * Revokes every token issued to the user so far, e.g. after a credential or role change.
+     * Joins the current transaction, if any.
+     * @param userId User ID.
+     */
+    public void revokeTokens(UUID userId) {
+        transactionTemplate.executeWithoutResult((status) -> {
+            userRepository.incrementTokenVersion(userId);
+            this.record(userId, userRepository.findTokenVersion(userId).orElse(Long.MAX_VALUE));
+        });
+    }
+    
+    /**
+     * Revokes every token of a deleted user, whatever its version.
+     * @param userId User ID.
+     */
+    public void revokeDeletedUser(UUID userId) {
+        transactionTemplate.executeWithoutResult((status) -> this.record(userId, Long.MAX_VALUE));
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(
+        fixedDelayString = "${jwt.revocation.refresh-interval-ms}",
+        initialDelayString = "${jwt.revocation.refresh-interval-ms}"
+    )
+    public void refresh() {
+        try {
+            LocalDateTime since = LocalDateTime.now().minus(tokenLifetime);
+            
+            // Merged, not replaced: a revocation committed during the read must not be dropped.
+            tokenRevocationRepository.findRevokedSince(since).forEach((revocation) -> this.merge(
+                revocation.getUserId(),
+                new Revocation(revocation.getMinVersion(), revocation.getRevokedAt())
+            ));
+            revocations.values().removeIf((revocation) -> revocation.revokedAt().isBefore(since));
+        } catch (Exception ex) {
+            LOGGER.warn("Token revocations could not be refreshed: {}", ex.getMessage());
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${jwt.revocation.purge-interval-ms}")
+    public void purgeExpired() {
+        tokenRevocationRepository.deleteExpired(LocalDateTime.now().minus(tokenLifetime));
+    }
+    
+    private void record(UUID userId, long minVersion) {
+        Revocation revocation = new Revocation(minVersion, LocalDateTime.now());
+        tokenRevocationRepository.save(TokenRevocationEntity.builder()
+                                                            .userId(userId)
+                                                            .minVersion(minVersion)
+                                                            .revokedAt(revocation.revokedAt())
+                                                            .build());
+        
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                merge(userId, revocation);
+            }
+        });
+    }
+    
+    private void merge(UUID userId, Revocation revocation) {
+        Revocation previous = revocations.get(userId);
+        Revocation merged = revocations.merge(userId, revocation, (current, added) ->
+            added.minVersion() >= current.minVersion() ? added : current);
+        
+        // Each refresh reads the recent revocations again; only new ones are announced.
+        if (!merged.equals(previous)) eventPublisher.publishEvent(new TokensRevokedEvent(userId));
+    }
+    
+    private record Revocation(long minVersion, LocalDateTime revokedAt) {
+    }
+}
@@ -0,0 +1,12 @@
+package fast_order.commons.security;
+
+import java.util.UUID;
+
+/**
+ * Published by {@link TokenRevocationService} when the tokens of a user are revoked, on this
+ * instance (once committed) or on another one (once read), i.e. when the email, role or password
+ * of the user changed or the user was deleted.
+ * @param userId User ID.
+ */
+public record TokensRevokedEvent(UUID userId) {
+}
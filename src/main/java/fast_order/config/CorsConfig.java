@@ -47,9 +47,16 @@ public class CorsConfig {
     private static final List<String> HEADERS = List.of(
         HttpHeaders.AUTHORIZATION,
         HttpHeaders.CONTENT_TYPE,
-        HttpHeaders.ACCEPT
+        HttpHeaders.ACCEPT,
+        HttpHeaders.IF_MATCH,
+        "Idempotency-Key"
     );
     
+    /**
+     * List of response headers that browser clients are allowed to read.
+     */
+    private static final List<String> EXPOSED_HEADERS = List.of(HttpHeaders.ETAG);
+    
     /**
      * Defines the CORS configuration source for the application.
      * This bean configures the CORS policies that will be applied to incoming requests to routes
@@ -65,6 +72,7 @@ public class CorsConfig {
         corsConfig.setAllowedOrigins(ORIGINS);
         corsConfig.setAllowedMethods(METHODS);
         corsConfig.setAllowedHeaders(HEADERS);
+        corsConfig.setExposedHeaders(EXPOSED_HEADERS);
         corsConfig.setAllowCredentials(true);
         corsConfig.setMaxAge(3600L);
         
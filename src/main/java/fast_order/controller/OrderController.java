@@ -1,10 +1,21 @@
 package fast_order.controller;
 
+import fast_order.commons.enums.APIError;
+import fast_order.commons.enums.OrderStatus;
+import fast_order.dto.CursorPageTO;
+import fast_order.dto.OrderBatchResultTO;
+import fast_order.dto.OrderFilterTO;
 import fast_order.dto.OrderTO;
 import fast_order.commons.enums.APISuccess;
+import fast_order.exception.APIRequestException;
+import fast_order.service.AsyncOrderService;
+import fast_order.service.OrderGroupCommitService;
+import fast_order.service.OrderIdempotencyService;
 import fast_order.service.OrderService;
 import fast_order.utils.APIResponseData;
+import fast_order.utils.APIResponseDataCursor;
 import fast_order.utils.APIResponseHandler;
+import fast_order.utils.ETagUtils;
 import fast_order.commons.annotation.SwaggerApiResponses;
 import fast_order.utils.SwaggerResponseExample;
 import io.swagger.v3.oas.annotations.Operation;
@@ -16,6 +27,10 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.format.annotation.DateTimeFormat.ISO;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
@@ -25,9 +40,14 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.security.Principal;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
 
@@ -35,9 +55,11 @@ import java.util.UUID;
  * REST controller for order management.
  * *
  * Exposes endpoints for:
- * - Gets a list of all orders.
+ * - Gets a page of orders (cursor pagination).
+ * - Exports orders as a stream of NDJSON.
  * - Gets an order by means of an ID.
  * - Registering new orders in the system.
+ * - Registering a batch of orders in a single transaction.
  * - Updates an existing order in the system.
  * - Cancel a pending order in the system.
  * *
@@ -51,36 +73,130 @@ import java.util.UUID;
 @Tag(name = "Order", description = "Endpoints responsible for managing orders.")
 public class OrderController {
     private final OrderService orderService;
+    private final OrderIdempotencyService orderIdempotencyService;
+    private final AsyncOrderService asyncOrderService;
+    private final ObjectProvider<OrderGroupCommitService> groupCommitService;
     
-    public OrderController(OrderService orderService) {
+    public OrderController(
+        OrderService orderService,
+        OrderIdempotencyService orderIdempotencyService,
+        AsyncOrderService asyncOrderService,
+        ObjectProvider<OrderGroupCommitService> groupCommitService
+    )
+    {
         this.orderService = orderService;
+        this.orderIdempotencyService = orderIdempotencyService;
+        this.asyncOrderService = asyncOrderService;
+        this.groupCommitService = groupCommitService;
     }
     
     /**
-     * Gets all orders registered in the system.
-     * @return ResponseEntity with a list of orders in a standardized format.
+     * Gets the orders registered in the system, newest first, using cursor (keyset) pagination.
+     * @param userId Optional user filter.
+     * @param productId Optional product filter.
+     * @param status Optional status filter.
+     * @param from Optional lower bound (inclusive) of the creation date.
+     * @param to Optional upper bound (exclusive) of the creation date.
+     * @param cursor Cursor returned by the previous page, empty for the first page.
+     * @param size Number of orders per page.
+     * @return ResponseEntity with one page of orders and the cursor of the next one.
      * *
-     * @see OrderService#findAllOrders()
+     * @see OrderService#findOrders(OrderFilterTO, String, Integer)
      */
-    @Operation(summary = "Order list", description = "Gets a list of all orders.")
+    @Operation(
+        summary = "Order list",
+        description = "Gets a page of orders, newest first. Use 'cursor' to request the next page.",
+        parameters = {
+            @Parameter(name = "userId", description = "Filter by user.", in = ParameterIn.QUERY),
+            @Parameter(
+                name = "productId", description = "Filter by product.", in = ParameterIn.QUERY
+            ),
+            @Parameter(
+                name = "status", description = "Filter by status.", example = "pending",
+                in = ParameterIn.QUERY
+            ),
+            @Parameter(
+                name = "from", description = "Created at or after (ISO date-time).",
+                example = "2025-04-01T00:00:00", in = ParameterIn.QUERY
+            ),
+            @Parameter(
+                name = "to", description = "Created before (ISO date-time).",
+                example = "2025-05-01T00:00:00", in = ParameterIn.QUERY
+            ),
+            @Parameter(
+                name = "cursor", description = "Cursor returned by the previous page.",
+                in = ParameterIn.QUERY
+            ),
+            @Parameter(
+                name = "size", description = "Items per page", example = "20",
+                in = ParameterIn.QUERY
+            )
+        }
+    )
     @SwaggerApiResponses
     @ApiResponse(
         responseCode = "200",
         description = "Orders successfully obtained.",
         content = @Content(
             mediaType = MediaType.APPLICATION_JSON_VALUE,
-            schema = @Schema(implementation = APIResponseData.class),
+            schema = @Schema(implementation = APIResponseDataCursor.class),
             examples = @ExampleObject(
                 value = SwaggerResponseExample.EXAMPLE_GET_ALL_RESOURCE
             )
         )
     )
-    @GetMapping("all")
-    public ResponseEntity<APIResponseData<List<OrderTO>>> findAllOrders() {
-        List<OrderTO> orders = orderService.findAllOrders();
+    @GetMapping({"", "all"})
+    public ResponseEntity<APIResponseDataCursor<OrderTO>> findOrders(
+        @RequestParam(required = false) UUID userId,
+        @RequestParam(required = false) UUID productId,
+        @RequestParam(required = false) String status,
+        @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE_TIME) LocalDateTime from,
+        @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE_TIME) LocalDateTime to,
+        @RequestParam(required = false) String cursor,
+        @RequestParam(defaultValue = "20") Integer size
+    )
+    {
+        OrderFilterTO filter = this.buildFilter(userId, productId, status, from, to);
+        CursorPageTO<OrderTO> orders = orderService.findOrders(filter, cursor, size);
         return APIResponseHandler.handleResponse(APISuccess.RESOURCE_RETRIEVED, orders);
     }
     
+    /**
+     * Exports the orders that match the filters as newline-delimited JSON (one order per line).
+     * The response is streamed from a database cursor, so memory use does not grow with the
+     * number of orders.
+     * @return Streamed NDJSON body.
+     * *
+     * @see OrderService#exportOrders(OrderFilterTO, java.io.OutputStream)
+     */
+    @Operation(
+        summary = "Export orders",
+        description = "Streams all the orders that match the filters as NDJSON, newest first."
+    )
+    @SwaggerApiResponses
+    @ApiResponse(
+        responseCode = "200",
+        description = "Orders successfully exported.",
+        content = @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE)
+    )
+    @GetMapping(value = "export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportOrders(
+        @RequestParam(required = false) UUID userId,
+        @RequestParam(required = false) UUID productId,
+        @RequestParam(required = false) String status,
+        @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE_TIME) LocalDateTime from,
+        @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE_TIME) LocalDateTime to
+    )
+    {
+        OrderFilterTO filter = this.buildFilter(userId, productId, status, from, to);
+        StreamingResponseBody body = (output) -> orderService.exportOrders(filter, output);
+        
+        return ResponseEntity.ok()
+                             .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=orders.ndjson")
+                             .contentType(MediaType.APPLICATION_NDJSON)
+                             .body(body);
+    }
+    
     /**
      * Search for a specific order by its unique ID.
      * @param id Unique order identifier (required).
@@ -114,17 +230,32 @@ public class OrderController {
     )
     @GetMapping("id/{id}")
     public ResponseEntity<APIResponseData<OrderTO>> findOrderById(@PathVariable("id") UUID id) {
-        OrderTO order = orderService.findOrderById(id);
-        return APIResponseHandler.handleResponse(APISuccess.RESOURCE_RETRIEVED, order);
+        // Orders accepted asynchronously are reported as pending until they are persisted.
+        OrderTO order = asyncOrderService.findAcceptedOrder(id)
+                                         .orElseGet(() -> orderService.findOrderById(id));
+        return APIResponseHandler.handleResponse(
+            APISuccess.RESOURCE_RETRIEVED, order, order.getVersion());
     }
     
     /**
      * Create a new order in the system.
+     * With an {@code Idempotency-Key} header, retries with the same key return the order created
+     * by the first request instead of creating a new one. Keys are scoped to the authenticated
+     * user, so two users sending the same key get their own orders.
+     * With {@code async=true} the order is only validated and queued, and the response is
+     * 202 Accepted with its ID; it stays pending in {@code GET /orders/id/{id}} until processed.
+     * Otherwise, with {@code order.group-commit.enabled}, concurrent orders share one transaction.
+     * @param idempotencyKey Optional key chosen by the client to identify the order.
+     * @param principal Authenticated user, owner of the idempotency key.
+     * @param async Whether to process the order in background.
      * @param order DTO with new order data (automatically validated).
      * @return ResponseEntity with the created order.
      * *
      * @see OrderTO Order data structure.
      * @see OrderService#createOrder(OrderTO)
+     * @see OrderIdempotencyService#createOrder(String, String, OrderTO)
+     * @see AsyncOrderService#acceptOrder(OrderTO)
+     * @see OrderGroupCommitService#createOrder(OrderTO)
      */
     @Operation(
         summary = "Create an order", description = "Create an order with all the required data."
@@ -142,17 +273,91 @@ public class OrderController {
         )
     )
     @PostMapping("create")
-    public ResponseEntity<APIResponseData<OrderTO>> createOrder(@Valid @RequestBody OrderTO order) {
-        OrderTO createdOrder = orderService.createOrder(order);
+    public ResponseEntity<APIResponseData<OrderTO>> createOrder(
+        @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+        @RequestParam(defaultValue = "false") boolean async,
+        @Valid @RequestBody OrderTO order,
+        @Parameter(hidden = true) Principal principal
+    )
+    {
+        if (async) {
+            if (idempotencyKey != null) {
+                APIError.BAD_REQUEST.setTitle("Invalid parameter");
+                APIError.BAD_REQUEST.setMessage(
+                    "The Idempotency-Key header is not supported for asynchronous orders.");
+                throw new APIRequestException(APIError.BAD_REQUEST);
+            }
+            
+            OrderTO acceptedOrder = asyncOrderService.acceptOrder(order);
+            
+            APISuccess.RESOURCE_ACCEPTED.setMessage(
+                "Order accepted. Check its status with GET /orders/id/{id}.");
+            
+            return APIResponseHandler.handleResponse(APISuccess.RESOURCE_ACCEPTED, acceptedOrder);
+        }
+        
+        OrderGroupCommitService groupCommit = groupCommitService.getIfAvailable();
+        OrderTO createdOrder;
+        
+        if (idempotencyKey != null) {
+            createdOrder = orderIdempotencyService.createOrder(
+                principal.getName(),
+                idempotencyKey,
+                order
+            );
+        } else if (groupCommit != null) {
+            createdOrder = groupCommit.createOrder(order);
+        } else {
+            createdOrder = orderService.createOrder(order);
+        }
         
         APISuccess.RESOURCE_RETRIEVED.setMessage("Order created successfully.");
         
         return APIResponseHandler.handleResponse(APISuccess.RESOURCE_RETRIEVED, createdOrder);
     }
     
+    /**
+     * Create several orders in a single transaction.
+     * Orders for the same product share one stock decrement and rows are inserted in JDBC batches.
+     * @param orders List of orders to register.
+     * @return ResponseEntity with the result of each order, in the order they were submitted.
+     * *
+     * @see OrderBatchResultTO Result data structure.
+     * @see OrderService#createOrders(List)
+     */
+    @Operation(
+        summary = "Create orders in batch",
+        description = "Create several orders at once and report the result of each one."
+    )
+    @SwaggerApiResponses
+    @ApiResponse(
+        responseCode = "200",
+        description = "Order batch processed.",
+        content = @Content(
+            mediaType = MediaType.APPLICATION_JSON_VALUE,
+            schema = @Schema(implementation = APIResponseData.class),
+            examples = @ExampleObject(
+                value = SwaggerResponseExample.EXAMPLE_GET_ALL_RESOURCE
+            )
+        )
+    )
+    @PostMapping("batch")
+    public ResponseEntity<APIResponseData<List<OrderBatchResultTO>>> createOrders(
+        @RequestBody List<OrderTO> orders
+    )
+    {
+        List<OrderBatchResultTO> results = orderService.createOrders(orders);
+        
+        APISuccess.RESOURCE_RETRIEVED.setMessage("Order batch processed successfully.");
+        
+        return APIResponseHandler.handleResponse(APISuccess.RESOURCE_RETRIEVED, results);
+    }
+    
     /**
      * Update an existing order.
      * @param id Unique identifier of the order to be updated.
+     * @param ifMatch Optional ETag of the order as read by the client. If the order has changed
+     * since then, the update fails with 409.
      * @param order Updated order data.
      * @return ResponseEntity with the updated order.
      * *
@@ -185,14 +390,18 @@ public class OrderController {
     @PutMapping("update/{id}")
     public ResponseEntity<APIResponseData<OrderTO>> updateOrder(
         @PathVariable("id") UUID id,
+        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
         @Valid @RequestBody OrderTO order
     )
     {
+        order.setVersion(ETagUtils.parseIfMatch(ifMatch));
+        
         OrderTO updatedOrder = orderService.updateOrder(id, order);
         
         APISuccess.RESOURCE_RETRIEVED.setMessage("Order updated successfully.");
         
-        return APIResponseHandler.handleResponse(APISuccess.RESOURCE_RETRIEVED, updatedOrder);
+        return APIResponseHandler.handleResponse(
+            APISuccess.RESOURCE_RETRIEVED, updatedOrder, updatedOrder.getVersion());
     }
     
     /**
@@ -233,4 +442,27 @@ public class OrderController {
         
         return APIResponseHandler.handleResponse(APISuccess.RESOURCE_RETRIEVED, (Void)null);
     }
+    
+    private OrderFilterTO buildFilter(
+        UUID userId,
+        UUID productId,
+        String status,
+        LocalDateTime from,
+        LocalDateTime to
+    )
+    {
+        OrderStatus orderStatus = null;
+        
+        if (status != null && !status.isBlank()) {
+            try {
+                orderStatus = OrderStatus.fromValue(status);
+            } catch (IllegalArgumentException ex) {
+                APIError.BAD_REQUEST.setTitle("Invalid parameter");
+                APIError.BAD_REQUEST.setMessage(ex.getMessage());
+                throw new APIRequestException(APIError.BAD_REQUEST);
+            }
+        }
+        
+        return new OrderFilterTO(userId, productId, orderStatus, from, to);
+    }
 }
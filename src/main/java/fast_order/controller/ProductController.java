@@ -3,12 +3,19 @@ package fast_order.controller;
 import fast_order.commons.annotation.SwaggerApiResponses;
 import fast_order.commons.enums.APISuccess;
 import fast_order.dto.PriceUpdateTO;
+import fast_order.dto.ProductImportResultTO;
+import fast_order.dto.ProductSuggestionTO;
 import fast_order.dto.ProductTO;
+import fast_order.dto.SlicePageTO;
+import fast_order.dto.StockShardsTO;
 import fast_order.dto.StockUpdateTO;
+import fast_order.service.ProductImportService;
 import fast_order.service.ProductService;
+import fast_order.service.search.ProductSuggestIndex;
 import fast_order.utils.APIResponseData;
 import fast_order.utils.APIResponseDataPagination;
 import fast_order.utils.APIResponseHandler;
+import fast_order.utils.ETagUtils;
 import fast_order.utils.SwaggerResponseExample;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -25,6 +32,7 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
@@ -35,10 +43,13 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.InputStream;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -47,13 +58,17 @@ import java.util.UUID;
  * *
  * Exposes endpoints for:
  * - Gets a list of all products.
+ * - Suggests products whose name starts with the text typed (autocomplete).
  * - Get a product by an ID.
  * - Obtain a product through its name.
  * - Register a new product in the system.
+ * - Imports a product catalog (CSV or NDJSON) in bulk.
  * - Updates an existing product in the system.
  * - Delete a product in the system.
  * - Updates the price of a product in the system.
  * - Updates the stock of a product in the system.
+ * - Updates the price or stock of many products in a single request.
+ * - Splits, rebalances and merges the stock of products with heavy order traffic.
  * *
  * All responses follow the standard format defined in {@link APIResponseData}.
  * *
@@ -66,9 +81,15 @@ import java.util.UUID;
 @Tag(name = "Product", description = "Endpoints responsible for managing products.")
 public class ProductController {
     private final ProductService productService;
+    private final ProductImportService productImportService;
     
-    public ProductController(ProductService productService) {
+    public ProductController(
+        ProductService productService,
+        ProductImportService productImportService
+    )
+    {
         this.productService = productService;
+        this.productImportService = productImportService;
     }
     
     /**
@@ -81,6 +102,13 @@ public class ProductController {
     @Operation(
         summary = "Product list", description = "Get a paginated list of all products.",
         parameters = {
+            @Parameter(
+                name = "q",
+                description = "Search in name and description, most relevant first. " +
+                    "Cannot be combined with other filters.",
+                example = "samsung galaxy",
+                in = ParameterIn.QUERY
+            ),
             @Parameter(
                 name = "name", description = "Filter by product name (substring match)",
                 example = "Samsung",
@@ -96,6 +124,13 @@ public class ProductController {
                 example = "99.99",
                 in = ParameterIn.QUERY
             ),
+            @Parameter(
+                name = "count",
+                description = "Set to false to skip counting the products: faster on large " +
+                    "catalogs, with approximate or no totals.",
+                example = "true",
+                in = ParameterIn.QUERY
+            ),
             @Parameter(
                 name = "page", description = "Page number (0-based)", example = "0",
                 in = ParameterIn.QUERY),
@@ -123,6 +158,7 @@ public class ProductController {
     @GetMapping()
     public ResponseEntity<APIResponseDataPagination<ProductTO>> findAllProducts(
         @RequestParam(required = false) Map<String, String> keywords,
+        @RequestParam(defaultValue = "true") Boolean count,
         @DefaultValue @PageableDefault(size = 20, direction = Sort.Direction.ASC)
         @Parameter(hidden = true) Pageable defaultPageable
     )
@@ -133,6 +169,13 @@ public class ProductController {
             defaultPageable.getSort()
         );
         
+        keywords.remove("count");
+        
+        if (!count) {
+            SlicePageTO<ProductTO> productSlice = productService.findProductSlice(pageable, keywords);
+            return APIResponseHandler.handleResponse(APISuccess.RESOURCE_RETRIEVED, productSlice);
+        }
+        
         Page<ProductTO> productTOPage = productService.findAllProducts(pageable, keywords);
         return APIResponseHandler.handleResponse(APISuccess.RESOURCE_RETRIEVED, productTOPage);
     }
@@ -165,7 +208,51 @@ public class ProductController {
     @GetMapping("id/{id}")
     public ResponseEntity<APIResponseData<ProductTO>> findProductById(@PathVariable("id") UUID id) {
         ProductTO product = productService.findProductById(id);
-        return APIResponseHandler.handleResponse(APISuccess.RESOURCE_RETRIEVED, product);
+        return APIResponseHandler.handleResponse(
+            APISuccess.RESOURCE_RETRIEVED, product, product.getVersion());
+    }
+    
+    /**
+     * Suggests products for a search box: those with a word of their name starting with the text,
+     * most ordered first. Served from memory, see {@link ProductSuggestIndex}.
+     *
+     * @param q Text typed so far (required).
+     * @param limit Maximum number of suggestions.
+     * @return ResponseEntity with the suggested products.
+     * *
+     * @see ProductService#suggestProducts(String, Integer)
+     */
+    @Operation(
+        summary = "Suggest products",
+        description = "Products with a word of their name starting with the text, most ordered first.",
+        parameters = {
+            @Parameter(
+                name = "q", description = "Text typed so far.", example = "lap", required = true,
+                in = ParameterIn.QUERY
+            ),
+            @Parameter(
+                name = "limit", description = "Maximum number of suggestions.", example = "10",
+                in = ParameterIn.QUERY
+            )
+        }
+    )
+    @SwaggerApiResponses
+    @ApiResponse(
+        responseCode = "200", description = "Successfully obtained suggestions.", content = @Content(
+        mediaType = MediaType.APPLICATION_JSON_VALUE,
+        schema = @Schema(implementation = APIResponseData.class), examples = @ExampleObject(
+        value = SwaggerResponseExample.EXAMPLE_GET_RESOURCE
+    )
+    )
+    )
+    @GetMapping("suggest")
+    public ResponseEntity<APIResponseData<List<ProductSuggestionTO>>> suggestProducts(
+        @RequestParam String q,
+        @RequestParam(defaultValue = "10") Integer limit
+    )
+    {
+        List<ProductSuggestionTO> suggestions = productService.suggestProducts(q, limit);
+        return APIResponseHandler.handleResponse(APISuccess.RESOURCE_RETRIEVED, suggestions);
     }
     
     /**
@@ -232,10 +319,55 @@ public class ProductController {
         return APIResponseHandler.handleResponse(APISuccess.RESOURCE_CREATED, createdProduct);
     }
     
+    /**
+     * Import products in bulk from a CSV or NDJSON body, read as a stream.
+     * Products are upserted by name; rows that cannot be imported are reported and skipped.
+     *
+     * @param contentType {@code text/csv} or {@code application/x-ndjson}.
+     * @param body Rows to import.
+     * @return ResponseEntity with the number of rows imported and the rejected ones.
+     * *
+     * @see ProductImportResultTO Result data structure.
+     * @see ProductImportService#importProducts(InputStream, String)
+     */
+    @Operation(
+        summary = "Import products",
+        description = """
+                      Create or update (by name) the products of a CSV file with a \
+                      name,price,stock,description header, or of NDJSON with one product per line.
+                      """
+    )
+    @SwaggerApiResponses
+    @ApiResponse(
+        responseCode = "200", description = "Import processed.", content = @Content(
+        mediaType = MediaType.APPLICATION_JSON_VALUE,
+        schema = @Schema(implementation = APIResponseData.class), examples = @ExampleObject(
+        value = SwaggerResponseExample.EXAMPLE_GET_RESOURCE
+    )
+    )
+    )
+    @PostMapping(
+        value = "import",
+        consumes = {ProductImportService.TEXT_CSV, ProductImportService.APPLICATION_NDJSON}
+    )
+    public ResponseEntity<APIResponseData<ProductImportResultTO>> importProducts(
+        @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+        InputStream body
+    )
+    {
+        ProductImportResultTO result = productImportService.importProducts(body, contentType);
+        
+        APISuccess.RESOURCE_RETRIEVED.setMessage("Product import processed successfully.");
+        
+        return APIResponseHandler.handleResponse(APISuccess.RESOURCE_RETRIEVED, result);
+    }
+    
     /**
      * Update an existing product.
      *
      * @param id      Unique identifier of the product to be updated.
+     * @param ifMatch Optional ETag of the product as read by the client. If the product has
+     *                changed since then, the update fails with 409.
      * @param product Updated product data.
      * @return ResponseEntity with the updated product.
      * *
@@ -261,12 +393,16 @@ public class ProductController {
     @PutMapping("update/{id}")
     public ResponseEntity<APIResponseData<ProductTO>> updateProduct(
         @PathVariable("id") UUID id,
+        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
         @Valid @RequestBody
         ProductTO product
     )
     {
+        product.setVersion(ETagUtils.parseIfMatch(ifMatch));
+        
         ProductTO updatedProduct = productService.updateProduct(id, product);
-        return APIResponseHandler.handleResponse(APISuccess.RESOURCE_UPDATED, updatedProduct);
+        return APIResponseHandler.handleResponse(
+            APISuccess.RESOURCE_UPDATED, updatedProduct, updatedProduct.getVersion());
     }
     
     /**
@@ -377,4 +513,185 @@ public class ProductController {
         APISuccess.RESOURCE_UPDATED.setMessage("Product stock successfully increased.");
         return APIResponseHandler.handleResponse(APISuccess.RESOURCE_UPDATED, updatedProductStock);
     }
+    
+    /**
+     * Updates the price of several products at once, all or none.
+     *
+     * @param prices New price per product ID.
+     * @return ResponseEntity with the updated products.
+     * *
+     * @see PriceUpdateTO PriceUpdate data structure.
+     * @see ProductService#updateProductPrices(Map)
+     */
+    @Operation(
+        summary = "Update the price of several products",
+        description = "Update the price of every product of the body, keyed by product ID."
+    )
+    @SwaggerApiResponses
+    @ApiResponse(
+        responseCode = "200", description = "Product prices updated successfully.",
+        content = @Content(
+            mediaType = MediaType.APPLICATION_JSON_VALUE,
+            schema = @Schema(implementation = APIResponseData.class), examples = @ExampleObject(
+            value = SwaggerResponseExample.EXAMPLE_GET_ALL_RESOURCE
+        )
+        )
+    )
+    @PatchMapping("update/price")
+    public ResponseEntity<APIResponseData<List<ProductTO>>> updateProductPrices(
+        @Valid @RequestBody
+        Map<UUID, PriceUpdateTO> prices
+    )
+    {
+        List<ProductTO> updatedProducts = productService.updateProductPrices(prices);
+        APISuccess.RESOURCE_UPDATED.setMessage("Product prices updated successfully.");
+        return APIResponseHandler.handleResponse(APISuccess.RESOURCE_UPDATED, updatedProducts);
+    }
+    
+    /**
+     * Increases the available stock of several products at once, all or none.
+     *
+     * @param amounts Quantity to increase per product ID.
+     * @return ResponseEntity with the updated products.
+     * *
+     * @see StockUpdateTO StockUpdate data structure.
+     * @see ProductService#updateProductStocks(Map)
+     */
+    @Operation(
+        summary = "Increase the stock of several products",
+        description = "Increase the stock of every product of the body, keyed by product ID."
+    )
+    @SwaggerApiResponses
+    @ApiResponse(
+        responseCode = "200", description = "Product stocks successfully increased.",
+        content = @Content(
+            mediaType = MediaType.APPLICATION_JSON_VALUE,
+            schema = @Schema(implementation = APIResponseData.class), examples = @ExampleObject(
+            value = SwaggerResponseExample.EXAMPLE_GET_ALL_RESOURCE
+        )
+        )
+    )
+    @PatchMapping("update/stock")
+    public ResponseEntity<APIResponseData<List<ProductTO>>> updateProductStocks(
+        @Valid @RequestBody
+        Map<UUID, StockUpdateTO> amounts
+    )
+    {
+        List<ProductTO> updatedProducts = productService.updateProductStocks(amounts);
+        APISuccess.RESOURCE_UPDATED.setMessage("Product stocks successfully increased.");
+        return APIResponseHandler.handleResponse(APISuccess.RESOURCE_UPDATED, updatedProducts);
+    }
+    
+    /**
+     * Splits the stock of a product across several rows, so concurrent orders for it lock
+     * different rows. Splitting into one row merges the stock back into the product.
+     *
+     * @param id     Unique identifier of the product.
+     * @param shards DTO with the number of rows.
+     * @return ResponseEntity with the updated product
+     * *
+     * @see StockShardsTO StockShards data structure.
+     * @see ProductService#splitProductStock(UUID, Integer)
+     */
+    @Operation(
+        summary = "Split the stock of a product",
+        description = "Split the stock of a product with heavy order traffic across several rows.",
+        parameters = @Parameter(
+            name = "id", description = "Product ID to split stock.", example = "10", required = true,
+            in = ParameterIn.PATH
+        )
+    )
+    @SwaggerApiResponses
+    @ApiResponse(
+        responseCode = "200", description = "Product stock successfully split.",
+        content = @Content(
+            mediaType = MediaType.APPLICATION_JSON_VALUE,
+            schema = @Schema(implementation = APIResponseData.class), examples = @ExampleObject(
+            value = SwaggerResponseExample.EXAMPLE_GET_RESOURCE
+        )
+        )
+    )
+    @PatchMapping("stock-shards/split/{id}")
+    public ResponseEntity<APIResponseData<ProductTO>> splitProductStock(
+        @PathVariable("id") UUID id,
+        @Valid @RequestBody
+        StockShardsTO shards
+    )
+    {
+        ProductTO product = productService.splitProductStock(id, shards.shards());
+        APISuccess.RESOURCE_UPDATED.setMessage("Product stock successfully split.");
+        return APIResponseHandler.handleResponse(APISuccess.RESOURCE_UPDATED, product);
+    }
+    
+    /**
+     * Spreads the stock of a split product evenly again across its rows.
+     *
+     * @param id Unique identifier of the product.
+     * @return ResponseEntity with the updated product
+     * *
+     * @see ProductService#rebalanceProductStock(UUID)
+     */
+    @Operation(
+        summary = "Rebalance the stock of a product",
+        description = "Spread the stock of a split product evenly across its rows.",
+        parameters = @Parameter(
+            name = "id", description = "Product ID to rebalance stock.", example = "10",
+            required = true, in = ParameterIn.PATH
+        )
+    )
+    @SwaggerApiResponses
+    @ApiResponse(
+        responseCode = "200", description = "Product stock successfully rebalanced.",
+        content = @Content(
+            mediaType = MediaType.APPLICATION_JSON_VALUE,
+            schema = @Schema(implementation = APIResponseData.class), examples = @ExampleObject(
+            value = SwaggerResponseExample.EXAMPLE_GET_RESOURCE
+        )
+        )
+    )
+    @PatchMapping("stock-shards/rebalance/{id}")
+    public ResponseEntity<APIResponseData<ProductTO>> rebalanceProductStock(
+        @PathVariable("id") UUID id
+    )
+    {
+        ProductTO product = productService.rebalanceProductStock(id);
+        APISuccess.RESOURCE_UPDATED.setMessage("Product stock successfully rebalanced.");
+        return APIResponseHandler.handleResponse(APISuccess.RESOURCE_UPDATED, product);
+    }
+    
+    /**
+     * Merges the stock of a split product back into a single row.
+     *
+     * @param id Unique identifier of the product.
+     * @return ResponseEntity with the updated product
+     * *
+     * @see ProductService#splitProductStock(UUID, Integer)
+     */
+    @Operation(
+        summary = "Merge the stock of a product",
+        description = "Merge the stock of a split product back into a single row.",
+        parameters = @Parameter(
+            name = "id", description = "Product ID to merge stock.", example = "10", required = true,
+            in = ParameterIn.PATH
+        )
+    )
+    @SwaggerApiResponses
+    @ApiResponse(
+        responseCode = "200", description = "Product stock successfully merged.",
+        content = @Content(
+            mediaType = MediaType.APPLICATION_JSON_VALUE,
+            schema = @Schema(implementation = APIResponseData.class), examples = @ExampleObject(
+            value = SwaggerResponseExample.EXAMPLE_GET_RESOURCE
+        )
+        )
+    )
+    @PatchMapping("stock-shards/merge/{id}")
+    public ResponseEntity<APIResponseData<ProductTO>> mergeProductStock(
+        @PathVariable("id") UUID id
+    )
+    {
+        ProductTO product = productService.splitProductStock(id, 1);
+        APISuccess.RESOURCE_UPDATED.setMessage("Product stock successfully merged.");
+        return APIResponseHandler.handleResponse(APISuccess.RESOURCE_UPDATED, product);
+    }
 }
@@ -0,0 +1,15 @@
+package fast_order.dto;
+
+import java.util.List;
+
+/**
+ * Record with one page of a cursor (keyset) paginated listing.
+ * @param content Items of the current page.
+ * @param nextCursor Opaque cursor to request the next page, {@code null} on the last page.
+ * @param pageSize Number of items requested per page.
+ */
+public record CursorPageTO<T>(List<T> content, String nextCursor, Integer pageSize) {
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
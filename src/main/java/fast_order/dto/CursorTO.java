@@ -0,0 +1,26 @@
+package fast_order.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * Record representing cursor (keyset) pagination information for API responses.
+ * @param nextCursor Opaque cursor to request the next page, {@code null} on the last page.
+ * @param pageSize Number of items requested per page.
+ * @param numberOfElements Total number of items on the current page.
+ * @param hasNext Indicator if there are more items after the current page.
+ * *
+ * Unlike {@link PaginationTO} it carries no totals, so no count query is needed to build it.
+ */
+public record CursorTO(
+    @Schema(description = "Cursor to request the next page.", example = "MjAyNS0wNC0xM1QxNTo0Mjo")
+    String nextCursor,
+    
+    @Schema(description = "The number of elements per page.", example = "20")
+    Integer pageSize,
+    
+    @Schema(description = "The number of elements in the current page.", example = "20")
+    Integer numberOfElements,
+    
+    @Schema(description = "Indicates if there are more elements after this page.", example = "true")
+    Boolean hasNext
+) {}
@@ -0,0 +1,63 @@
+package fast_order.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import fast_order.commons.enums.APIError;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.Map;
+
+/**
+ * Data Transfer Object (DTO) representing the outcome of one order inside a batch request.
+ * -
+ * Each entry points back to the position of the order in the submitted list, so clients can
+ * match successes and failures without relying on the response order.
+ * -
+ * Lombok annotations ({@code Builder}, {@code Getter}, {@code Setter}) automatically generate the
+ * builder pattern, getters and setters.
+ */
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(name = "OrderBatchResult", description = "DTO that represents the result of a batch order.")
+public class OrderBatchResultTO {
+    @Schema(description = "Position of the order in the submitted batch (0-based).", example = "0")
+    @JsonProperty(value = "index")
+    private Integer index;
+    
+    @Schema(description = "Indicates whether the order was created.", example = "true")
+    @JsonProperty(value = "success")
+    private Boolean success;
+    
+    @Schema(description = "Order created. Only present when the order succeeded.")
+    @JsonProperty(value = "order")
+    private OrderTO order;
+    
+    @Schema(hidden = true)
+    @JsonIgnore
+    private APIError error;
+    
+    @Schema(description = "Short title of the error.", example = "Insufficient stock")
+    @JsonProperty(value = "title")
+    private String title;
+    
+    @Schema(
+        description = "Detailed error message.",
+        example = "Insufficient stock for the requested product."
+    )
+    @JsonProperty(value = "message")
+    private String message;
+    
+    @Schema(description = "Specific reasons for the error. Useful for validation errors.")
+    @JsonProperty(value = "reasons")
+    private Map<String, String> reasons;
+}
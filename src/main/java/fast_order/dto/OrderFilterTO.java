@@ -0,0 +1,24 @@
+package fast_order.dto;
+
+import fast_order.commons.enums.OrderStatus;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Record with the optional filters accepted by the order listing and export endpoints.
+ * Every {@code null} component is ignored.
+ *
+ * @param userId    Only orders placed by this user.
+ * @param productId Only orders of this product.
+ * @param status    Only orders in this status.
+ * @param from      Only orders created at or after this moment.
+ * @param to        Only orders created before this moment.
+ */
+public record OrderFilterTO(
+    UUID userId,
+    UUID productId,
+    OrderStatus status,
+    LocalDateTime from,
+    LocalDateTime to
+) {}
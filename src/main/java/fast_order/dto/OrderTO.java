@@ -66,6 +66,13 @@ public class OrderTO {
     @JsonProperty(value = "productId")
     private UUID productId;
     
+    @Schema(
+        description = "Price of the product when the order was placed.",
+        example = "999.99", accessMode = Schema.AccessMode.READ_ONLY
+    )
+    @JsonProperty(value = "unitPrice", access = JsonProperty.Access.READ_ONLY)
+    private Double unitPrice;
+    
     @Schema(
         description = "Current status of the order.",
         examples = {"PENDING", "FINISHED", "CANCELLED"}, defaultValue = "PENDING"
@@ -80,4 +87,11 @@ public class OrderTO {
     )
     @JsonProperty(value = "createdAt")
     private LocalDateTime createdAt;
+    
+    @Schema(
+        description = "Version of the order, increased on every change. Also returned as the ETag.",
+        example = "3", accessMode = Schema.AccessMode.READ_ONLY
+    )
+    @JsonProperty(value = "version", access = JsonProperty.Access.READ_ONLY)
+    private Long version;
 }
@@ -1,5 +1,6 @@
 package fast_order.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import io.swagger.v3.oas.annotations.media.Schema;
 
 /**
@@ -13,9 +14,13 @@ import io.swagger.v3.oas.annotations.media.Schema;
  * @param numberOfElements Total number of items on the current page.
  * @param sorted Indicator if the collection is in ascending order.
  * @param unsorted Indicator if the collection is in descending order.
+ * @param hasNext Indicator if there is a page after the current one.
+ * @param totalApproximate Present when the totals are approximate.
  * *
- * It is typically included in API responses that return paginated data.
+ * It is typically included in API responses that return paginated data. Listings requested
+ * without a count leave the totals empty, or fill them from an approximate total.
  */
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public record PaginationTO(
     @Schema(description = "The current page number (0-indexed).", example = "0")
     Integer pageNumber,
@@ -42,5 +47,14 @@ public record PaginationTO(
     Boolean sorted,
     
     @Schema(description = "Indicates if the result is unsorted.", example = "true")
-    Boolean unsorted
+    Boolean unsorted,
+    
+    @Schema(description = "Indicates if there is a page after the current one.", example = "true")
+    Boolean hasNext,
+    
+    @Schema(
+        description = "Present when the totals are approximate (listing without count).",
+        example = "true"
+    )
+    Boolean totalApproximate
 ) {}
@@ -0,0 +1,52 @@
+package fast_order.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.Map;
+
+/**
+ * Data Transfer Object (DTO) representing a row of a product import that was not imported.
+ * -
+ * Rows are numbered from 1 in the order they were read (the CSV header is not counted), so the
+ * client can fix the source file and import it again: valid rows are upserted by name.
+ * -
+ * Lombok annotations ({@code Builder}, {@code Getter}, {@code Setter}) automatically generate the
+ * builder pattern, getters and setters.
+ */
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(name = "ProductImportError", description = "DTO that represents a rejected import row.")
+public class ProductImportErrorTO {
+    @Schema(
+        description = "Number of the row in the import (1-based, header excluded).", example = "12"
+    )
+    @JsonProperty(value = "row")
+    private Long row;
+    
+    @Schema(description = "Product name of the row, when it could be read.", example = "Laptop M1")
+    @JsonProperty(value = "name")
+    private String name;
+    
+    @Schema(description = "Short title of the error.", example = "Invalid row")
+    @JsonProperty(value = "title")
+    private String title;
+    
+    @Schema(description = "Detailed error message.", example = "The row has invalid data.")
+    @JsonProperty(value = "message")
+    private String message;
+    
+    @Schema(description = "Specific reasons for the error, per field.")
+    @JsonProperty(value = "reasons")
+    private Map<String, String> reasons;
+}
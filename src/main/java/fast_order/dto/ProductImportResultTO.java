@@ -0,0 +1,48 @@
+package fast_order.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Data Transfer Object (DTO) representing the outcome of a product import.
+ * -
+ * Only the first {@code product.import.max-errors} rejected rows are listed; {@code failed}
+ * always counts all of them.
+ * -
+ * Lombok annotations ({@code Builder}, {@code Getter}, {@code Setter}) automatically generate the
+ * builder pattern, getters and setters.
+ */
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@Schema(name = "ProductImportResult", description = "DTO that represents the result of an import.")
+public class ProductImportResultTO {
+    @Schema(description = "Rows read.", example = "1000")
+    @JsonProperty(value = "rows")
+    private Long rows;
+    
+    @Schema(description = "Rows inserted or updated.", example = "998")
+    @JsonProperty(value = "imported")
+    private Long imported;
+    
+    @Schema(description = "Rows rejected.", example = "2")
+    @JsonProperty(value = "failed")
+    private Long failed;
+    
+    @Schema(description = "Whether some rejected rows are missing from the errors list.")
+    @JsonProperty(value = "errorsTruncated")
+    private Boolean errorsTruncated;
+    
+    @Schema(description = "Rejected rows, in the order they were read.")
+    @JsonProperty(value = "errors")
+    private List<ProductImportErrorTO> errors;
+}
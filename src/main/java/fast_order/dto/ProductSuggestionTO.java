@@ -0,0 +1,23 @@
+package fast_order.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.UUID;
+
+/**
+ * Data Transfer Object (DTO) with a product suggested while the user types its name.
+ *
+ * @param id Product ID.
+ * @param name Product name.
+ */
+@Schema(name = "ProductSuggestion", description = "DTO that represents a suggested product.")
+public record ProductSuggestionTO(
+    @Schema(description = "Product ID.", example = "3fa85f64-5717-4562-b3fc-2c963f66afa6")
+    @JsonProperty(value = "id")
+    UUID id,
+    
+    @Schema(description = "Product name.", example = "Samsung Galaxy S24")
+    @JsonProperty(value = "name")
+    String name
+) {}
@@ -85,4 +85,18 @@ public class ProductTO {
     @Size(min = 10, max = 200, message = "{product.description.size}")
     @JsonProperty(value = "description")
     private String description;
+    
+    @Schema(
+        description = "Number of rows the stock is split into (1 when it is not split).",
+        example = "1", accessMode = Schema.AccessMode.READ_ONLY
+    )
+    @JsonProperty(value = "stockShards", access = JsonProperty.Access.READ_ONLY)
+    private Integer stockShards;
+    
+    @Schema(
+        description = "Version of the product, increased on every change. Also returned as the ETag.",
+        example = "3", accessMode = Schema.AccessMode.READ_ONLY
+    )
+    @JsonProperty(value = "version", access = JsonProperty.Access.READ_ONLY)
+    private Long version;
 }
@@ -0,0 +1,12 @@
+package fast_order.dto;
+
+import org.springframework.data.domain.Slice;
+
+/**
+ * Record with one page of a listing that was not counted.
+ * @param slice Items of the current page and whether there is a next one.
+ * @param approximateTotal Cached or estimated number of items, {@code null} if not requested or
+ * the listing is filtered.
+ */
+public record SlicePageTO<T>(Slice<T> slice, Long approximateTotal) {
+}
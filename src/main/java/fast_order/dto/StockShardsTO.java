@@ -0,0 +1,31 @@
+package fast_order.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+/**
+ * Data Transfer Object (DTO) to split the stock of a product across several rows.
+ * -
+ * Used by the administration endpoints of products with heavy order traffic: with more shards,
+ * concurrent orders for the product lock different rows.
+ *
+ * @param shards Number of rows the stock is split into. 1 merges it back into the product.
+ */
+@Schema(
+    name = "StockShards",
+    description = "DTO used to split the stock of a product across several rows."
+)
+public record StockShardsTO(
+    @Schema(
+        description = "Number of rows the stock is split into. Between 1 and 64.",
+        example = "8", requiredMode = Schema.RequiredMode.REQUIRED
+    )
+    @NotNull(message = "{field.null}")
+    @Min(value = 1, message = "{product.stockShards.min}")
+    @Max(value = 64, message = "{product.stockShards.max}")
+    @JsonProperty(value = "shards")
+    Integer shards
+) {}
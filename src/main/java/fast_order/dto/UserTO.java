@@ -80,8 +80,11 @@ public class UserTO {
     @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd")
     private LocalDate signUpDate;
     
-    @Schema(description = "Total amount of user spending. Cannot be negative.", example = "150.50")
-    @JsonProperty(value = "totalSpent")
+    @Schema(
+        description = "Total amount of user spending, maintained from their orders.",
+        example = "150.50"
+    )
+    @JsonProperty(value = "totalSpent", access = JsonProperty.Access.READ_ONLY)
     private Double totalSpent;
     
     @Schema(
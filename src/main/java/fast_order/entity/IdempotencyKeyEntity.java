@@ -0,0 +1,53 @@
+package fast_order.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Order created for an {@code Idempotency-Key}.
+ * -
+ * The key is the SHA-256 of the authenticated user and the header value, so keys of different
+ * users never collide. The row is inserted before the order, in the same transaction, so a key is
+ * stored if and only if its order exists; the primary key makes a concurrent insert of the same
+ * key wait for the first transaction and then fail, even across instances.
+ */
+@Entity(name = "IDEMPOTENCY_KEY")
+@Table(
+    name = "IDEMPOTENCY_KEYS", schema = "fast_order_schema",
+    indexes = @Index(name = "idx_idempotency_keys_created_at", columnList = "created_at")
+)
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class IdempotencyKeyEntity {
+    @Id
+    @Column(name = "idempotency_key", length = 255)
+    private String key;
+    
+    @NotNull(message = "{field.null}")
+    @Column(name = "fingerprint", nullable = false, updatable = false, length = 64)
+    private String fingerprint;
+    
+    @NotNull(message = "{field.null}")
+    @Column(name = "order_id", nullable = false, updatable = false)
+    private UUID orderId;
+    
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
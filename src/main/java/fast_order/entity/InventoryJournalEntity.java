@@ -0,0 +1,55 @@
+package fast_order.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Stock change made by the inventory ledger that is not applied to {@code PRODUCTS} yet.
+ * -
+ * Rows are inserted in the same transaction as the order that reserved the stock (an insert
+ * takes no lock on the product row) and are folded into {@code PRODUCTS.stock} by the ledger
+ * flush, which deletes them in the same transaction.
+ */
+@Entity(name = "INVENTORY_JOURNAL")
+@Table(
+    name = "INVENTORY_JOURNAL", schema = "fast_order_schema",
+    indexes = @Index(name = "idx_inventory_journal_product_id", columnList = "product_id")
+)
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class InventoryJournalEntity {
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    @Column(name = "journal_id", unique = true)
+    private UUID id;
+    
+    @NotNull(message = "{field.null}")
+    @Column(name = "product_id", nullable = false, updatable = false)
+    private UUID productId;
+    
+    @NotNull(message = "{field.null}")
+    @Column(name = "delta", nullable = false, updatable = false)
+    private Integer delta;
+    
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
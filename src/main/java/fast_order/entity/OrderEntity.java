@@ -6,13 +6,13 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.FetchType;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
@@ -22,21 +22,31 @@ import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.CreationTimestamp;
 
 import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
-@Table(name = "ORDERS", schema = "fast_order_schema")
+@Table(
+    name = "ORDERS", schema = "fast_order_schema", indexes = {
+    @Index(name = "idx_orders_created_at_id", columnList = "created_at, order_id"),
+    @Index(name = "idx_orders_user_created_at", columnList = "user_id, created_at"),
+    @Index(name = "idx_orders_product_created_at", columnList = "product_id, created_at")
+}
+)
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
 @Getter
 @Setter
 public class OrderEntity {
+    /*
+     * Assigned in prePersist unless already set: orders accepted asynchronously get their ID
+     * when they are accepted, before they are persisted.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
     @Column(name = "order_id", unique = true)
     private UUID id;
     
@@ -56,6 +66,13 @@ public class OrderEntity {
     @JoinColumn(name = "product_id", referencedColumnName = "product_id", nullable = false)
     private ProductEntity product;
     
+    /*
+     * Price of the product when the order was placed: the basis of the spending the order adds
+     * to its user. Nullable only for rows created before it existed (see schema-postgresql.sql).
+     */
+    @Column(name = "unit_price")
+    private Double unitPrice;
+    
     @NotNull(message = "{field.null}")
     @Enumerated(EnumType.STRING)
     @Column(name = "status", nullable = false, length = 15)
@@ -65,8 +82,20 @@ public class OrderEntity {
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
     
+    /*
+     * Optimistic lock: an update carrying an older version fails instead of overwriting a
+     * concurrent change. Exposed to clients as the ETag.
+     */
+    @Version
+    @ColumnDefault("0")
+    @Column(name = "version", nullable = false)
+    private Long version;
+    
     @PrePersist
     private void prePersist() {
+        if (this.id == null) {
+            this.id = UUID.randomUUID();
+        }
         if (this.status == null) {
             this.status = OrderStatus.PENDING;
         }
@@ -0,0 +1,54 @@
+package fast_order.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Order notification waiting to be published to Kafka.
+ * -
+ * Rows are written in the same transaction as the order change that produced them and are
+ * removed by the outbox relay once the broker acknowledges them.
+ */
+@Entity(name = "ORDER_OUTBOX")
+@Table(
+    name = "ORDER_OUTBOX", schema = "fast_order_schema",
+    indexes = @Index(name = "idx_order_outbox_created_at", columnList = "created_at")
+)
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class OrderOutboxEntity {
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    @Column(name = "outbox_id", unique = true)
+    private UUID id;
+    
+    @NotNull(message = "{field.null}")
+    @Column(name = "order_id", nullable = false, updatable = false)
+    private UUID orderId;
+    
+    @NotNull(message = "{field.null}")
+    @Column(name = "message", nullable = false, updatable = false)
+    private String message;
+    
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -6,6 +6,7 @@ import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotEmpty;
@@ -18,6 +19,7 @@ import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.util.UUID;
 
@@ -56,4 +58,23 @@ public class ProductEntity {
     @Size(min = 10, max = 200, message = "{product.description.size}")
     @Column(name = "description", nullable = false, length = 200)
     private String description;
+    
+    /*
+     * Number of PRODUCT_STOCK_SHARDS rows holding the stock; 1 means the stock is only here.
+     */
+    @Builder.Default
+    @NotNull(message = "{field.null}")
+    @Min(value = 1, message = "{product.stockShards.min}")
+    @ColumnDefault("1")
+    @Column(name = "stock_shards", nullable = false)
+    private Integer stockShards = 1;
+    
+    /*
+     * Optimistic lock: an update carrying an older version fails instead of overwriting a
+     * concurrent change. Exposed to clients as the ETag.
+     */
+    @Version
+    @ColumnDefault("0")
+    @Column(name = "version", nullable = false)
+    private Long version;
 }
@@ -0,0 +1,56 @@
+package fast_order.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.PositiveOrZero;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.UUID;
+
+/**
+ * Part of the stock of a product split across several rows.
+ * -
+ * The stock of a product is {@code PRODUCTS.stock} plus the stock of all its shards. Orders take
+ * stock from a random shard, so concurrent orders for the same product lock different rows.
+ */
+@Entity(name = "PRODUCT_STOCK_SHARD")
+@Table(
+    name = "PRODUCT_STOCK_SHARDS", schema = "fast_order_schema",
+    uniqueConstraints = @UniqueConstraint(
+        name = "uk_product_stock_shards_product_shard", columnNames = {"product_id", "shard"}
+    )
+)
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class ProductStockShardEntity {
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    @Column(name = "shard_id", unique = true)
+    private UUID id;
+    
+    @NotNull(message = "{field.null}")
+    @Column(name = "product_id", nullable = false, updatable = false)
+    private UUID productId;
+    
+    @NotNull(message = "{field.null}")
+    @Column(name = "shard", nullable = false, updatable = false)
+    private Integer shard;
+    
+    @NotNull(message = "{field.null}")
+    @PositiveOrZero(message = "{product.stock.positive}")
+    @Column(name = "stock", nullable = false)
+    private Integer stock;
+}
@@ -0,0 +1,50 @@
+package fast_order.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Tokens of a user issued before a given token version, which are no longer accepted.
+ * -
+ * Written when the credentials, email or role of a user change or the user is deleted, and read by
+ * every instance into its in-memory denylist. A row is only needed while the tokens it revokes
+ * can still be unexpired, so rows older than {@code jwt.time.expiration} are purged.
+ */
+@Entity(name = "TOKEN_REVOCATION")
+@Table(
+    name = "TOKEN_REVOCATIONS", schema = "fast_order_schema",
+    indexes = @Index(name = "idx_token_revocations_revoked_at", columnList = "revoked_at")
+)
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class TokenRevocationEntity {
+    @Id
+    @Column(name = "user_id")
+    private UUID userId;
+    
+    /*
+     * Lowest token version still accepted; Long.MAX_VALUE once the user is deleted.
+     */
+    @NotNull(message = "{field.null}")
+    @Column(name = "min_version", nullable = false)
+    private Long minVersion;
+    
+    @NotNull(message = "{field.null}")
+    @Column(name = "revoked_at", nullable = false)
+    private LocalDateTime revokedAt;
+}
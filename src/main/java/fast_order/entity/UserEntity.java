@@ -23,6 +23,7 @@ import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.time.LocalDate;
 import java.util.UUID;
@@ -66,9 +67,21 @@ public class UserEntity {
     @Builder.Default
     @DecimalMin(value = "0.0", message = "{user.min.totalSpent}")
     @PositiveOrZero(message = "{user.totalSpent.positive}")
-    @Column(name = "total_spent", nullable = false)
+    /*
+     * Maintained by UserSpendingService from the orders of the user, never by entity updates.
+     */
+    @Column(name = "total_spent", nullable = false, updatable = false)
     private Double totalSpent = 0.0;
     
+    /*
+     * Version carried by the tokens of the user. Raised by TokenRevocationService to revoke them,
+     * never by entity updates.
+     */
+    @Builder.Default
+    @ColumnDefault("0")
+    @Column(name = "token_version", nullable = false, updatable = false)
+    private Long tokenVersion = 0L;
+    
     @Valid
     @OneToOne(fetch = FetchType.EAGER, optional = false)
     @JoinColumn(name = "role_id", referencedColumnName = "role_id", nullable = false)
@@ -3,15 +3,19 @@ package fast_order.mapper;
 import fast_order.dto.ProductTO;
 import fast_order.entity.ProductEntity;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 
 import java.util.List;
 import java.util.UUID;
 
 @Mapper(componentModel = "spring", uses = {UUID.class})
 public interface ProductMapper {
+    @Mapping(target = "stockShards", source = "stockShards", defaultValue = "1")
     ProductEntity toEntity(ProductTO product);
     
     ProductTO toDTO(ProductEntity product);
     
+    ProductTO copy(ProductTO product);
+    
     List<ProductTO> toDTOList(List<ProductEntity> products);
 }
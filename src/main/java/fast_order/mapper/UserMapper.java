@@ -12,11 +12,15 @@ import java.util.UUID;
 public interface UserMapper {
     
     @Mapping(target = "role.id", source = "roleId")
+    @Mapping(target = "totalSpent", defaultValue = "0.0")
+    @Mapping(target = "tokenVersion", ignore = true)
     UserEntity toEntity(UserTO user);
     
     @Mapping(target = "roleId", source = "role.id")
     @Mapping(target = "password", ignore = true)
     UserTO toDTO(UserEntity user);
     
+    UserTO copy(UserTO user);
+    
     List<UserTO> toDTOList(List<UserEntity> users);
 }
@@ -0,0 +1,22 @@
+package fast_order.repository;
+
+import jakarta.persistence.EntityManager;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+/**
+ * Tells the custom repositories whether they run on Postgres, where statements such as
+ * {@code UPDATE ... FROM} and {@code RETURNING} are available, or on another database (H2 in tests)
+ * where they fall back to portable JPQL.
+ */
+final class DatabaseDialect {
+    private DatabaseDialect() {
+    }
+    
+    static boolean isPostgres(EntityManager entityManager) {
+        return entityManager.getEntityManagerFactory()
+                            .unwrap(SessionFactoryImplementor.class)
+                            .getJdbcServices()
+                            .getDialect() instanceof PostgreSQLDialect;
+    }
+}
@@ -0,0 +1,38 @@
+package fast_order.repository;
+
+import fast_order.entity.IdempotencyKeyEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Repository
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKeyEntity, String> {
+    /*
+     * Plain INSERT (not save, which would merge an assigned ID): a key already stored, or being
+     * stored by a transaction still running, makes it fail with a unique violation.
+     */
+    @Modifying
+    @Query(
+        value = "INSERT INTO fast_order_schema.IDEMPOTENCY_KEYS " +
+            "(idempotency_key, fingerprint, order_id, created_at) " +
+            "VALUES (:key, :fingerprint, :orderId, :createdAt)",
+        nativeQuery = true
+    )
+    int insert(
+        @Param("key") String key,
+        @Param("fingerprint") String fingerprint,
+        @Param("orderId") UUID orderId,
+        @Param("createdAt") LocalDateTime createdAt
+    );
+    
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM IDEMPOTENCY_KEY idem WHERE idem.createdAt < :before")
+    int deleteExpired(@Param("before") LocalDateTime before);
+}
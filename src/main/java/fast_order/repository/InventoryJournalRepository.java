@@ -0,0 +1,37 @@
+package fast_order.repository;
+
+import fast_order.entity.InventoryJournalEntity;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface InventoryJournalRepository extends JpaRepository<InventoryJournalEntity, UUID> {
+    /*
+     * Lock timeout -2 is SKIP LOCKED: a flush never waits for another flush holding older rows.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT jour FROM INVENTORY_JOURNAL jour ORDER BY jour.createdAt ASC")
+    List<InventoryJournalEntity> findNextBatch(Pageable pageable);
+    
+    /*
+     * Persisted stock plus the journal entries not folded into it yet, read in one statement so
+     * a concurrent flush is seen either entirely or not at all.
+     */
+    @Query(
+        "SELECT prod.stock + COALESCE((SELECT SUM(jour.delta) FROM INVENTORY_JOURNAL jour " +
+            "WHERE jour.productId = prod.id), 0) FROM PRODUCT prod WHERE prod.id = :id"
+    )
+    Optional<Long> findLedgerStock(@Param("id") UUID productId);
+}
@@ -0,0 +1,26 @@
+package fast_order.repository;
+
+import fast_order.entity.OrderOutboxEntity;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface OrderOutboxRepository extends JpaRepository<OrderOutboxEntity, UUID> {
+    /*
+     * Lock timeout -2 is SKIP LOCKED: several relay instances can drain the outbox at the same
+     * time without publishing the same row twice.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT out FROM ORDER_OUTBOX out ORDER BY out.createdAt ASC")
+    List<OrderOutboxEntity> findNextBatch(Pageable pageable);
+}
@@ -1,20 +1,41 @@
 package fast_order.repository;
 
-import fast_order.commons.enums.OrderStatus;
 import fast_order.entity.OrderEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.util.UUID;
 
 @Repository
-public interface OrderRepository extends JpaRepository<OrderEntity, UUID> {
-    @Modifying
-    @Transactional
-    @Query("UPDATE OrderEntity ord SET ord.status = :status, ord.amount = 0 WHERE ord.id = :id")
-    int cancelOrder(@Param("id") UUID id, @Param("status") OrderStatus status);
+public interface OrderRepository extends JpaRepository<OrderEntity, UUID>,
+    JpaSpecificationExecutor<OrderEntity>, OrderRepositoryCustom {
+    /*
+     * Both references of an order checked in one round-trip instead of loading the user and the
+     * product one after the other. The price is read with them for the user spending.
+     */
+    @Query(
+        value = "SELECT EXISTS (" +
+            "SELECT 1 FROM fast_order_schema.USERS WHERE user_id = :userId" +
+            ") AS \"userExists\", EXISTS (" +
+            "SELECT 1 FROM fast_order_schema.PRODUCTS WHERE product_id = :productId" +
+            ") AS \"productExists\", (" +
+            "SELECT price FROM fast_order_schema.PRODUCTS WHERE product_id = :productId" +
+            ") AS \"productPrice\"",
+        nativeQuery = true
+    )
+    OrderReferences findReferences(
+        @Param("userId") UUID userId,
+        @Param("productId") UUID productId
+    );
+    
+    interface OrderReferences {
+        Boolean getUserExists();
+        
+        Boolean getProductExists();
+        
+        Double getProductPrice();
+    }
 }
@@ -0,0 +1,37 @@
+package fast_order.repository;
+
+import fast_order.entity.OrderEntity;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+public interface OrderRepositoryCustom {
+    /**
+     * Forward-only stream of the orders matching the specification, newest first.
+     * Must be consumed inside a transaction and closed by the caller.
+     * @param spec Filters to apply.
+     * @param fetchSize Rows fetched from the database per round-trip.
+     */
+    Stream<OrderEntity> streamOrders(Specification<OrderEntity> spec, int fetchSize);
+    
+    /**
+     * Cancels the order unless it is already cancelled and, with {@code restock}, adds its amount
+     * back to the stock of the product. On Postgres it is a single statement returning the order.
+     * @param id Order ID.
+     * @param restock Whether to add the amount to {@code PRODUCTS.stock} in the same statement.
+     * @return The order as it was before being cancelled, with its unit price; empty if the
+     * order does not exist or is already cancelled.
+     */
+    Optional<CancelledOrder> cancelOrder(UUID id, boolean restock);
+    
+    record CancelledOrder(
+        UUID id,
+        UUID userId,
+        UUID productId,
+        Integer amount,
+        Double unitPrice
+    ) {
+    }
+}
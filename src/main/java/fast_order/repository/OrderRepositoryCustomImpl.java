@@ -0,0 +1,130 @@
+package fast_order.repository;
+
+import fast_order.commons.enums.OrderStatus;
+import fast_order.entity.OrderEntity;
+import fast_order.utils.OrderSpecification;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+public class OrderRepositoryCustomImpl implements OrderRepositoryCustom {
+    /*
+     * The order row is locked first (FOR UPDATE) so the amount given back is the latest one, then
+     * cancelled and the stock restored by data-modifying CTEs, all in one statement.
+     */
+    private static final String CANCEL_QUERY =
+        "WITH target AS (" +
+            "SELECT order_id, amount, unit_price FROM fast_order_schema.ORDERS " +
+            "WHERE order_id = :id AND status <> :cancelled FOR UPDATE" +
+            "), cancelled AS (" +
+            "UPDATE fast_order_schema.ORDERS ord SET status = :cancelled, amount = 0, " +
+            "version = ord.version + 1 FROM target WHERE ord.order_id = target.order_id " +
+            "RETURNING ord.order_id, ord.user_id, ord.product_id, target.amount, " +
+            "target.unit_price" +
+            "), restocked AS (" +
+            "UPDATE fast_order_schema.PRODUCTS prod SET stock = prod.stock + cancelled.amount, " +
+            "version = prod.version + 1 FROM cancelled " +
+            "WHERE prod.product_id = cancelled.product_id AND CAST(:restock AS boolean) " +
+            "RETURNING prod.product_id" +
+            ") " +
+            "SELECT cancelled.order_id, cancelled.user_id, cancelled.product_id, " +
+            "cancelled.amount, COALESCE(cancelled.unit_price, prod.price) FROM cancelled " +
+            "JOIN fast_order_schema.PRODUCTS prod ON prod.product_id = cancelled.product_id";
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Override
+    public Stream<OrderEntity> streamOrders(Specification<OrderEntity> spec, int fetchSize) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<OrderEntity> query = cb.createQuery(OrderEntity.class);
+        Root<OrderEntity> root = query.from(OrderEntity.class);
+        
+        query.select(root)
+             .where(spec.toPredicate(root, query, cb))
+             .orderBy(QueryUtils.toOrders(OrderSpecification.KEYSET_SORT, root, cb));
+        
+        AtomicLong read = new AtomicLong();
+        
+        /*
+         * The persistence context is cleared every fetchSize rows so the entities already
+         * written out can be garbage collected and memory stays flat for any table size.
+         */
+        return entityManager.createQuery(query)
+                            .setHint(AvailableHints.HINT_FETCH_SIZE, fetchSize)
+                            .setHint(AvailableHints.HINT_READ_ONLY, true)
+                            .getResultStream()
+                            .peek((order) -> {
+                                if (read.incrementAndGet() % fetchSize == 0) entityManager.clear();
+                            });
+    }
+    
+    @Override
+    @Transactional
+    public Optional<CancelledOrder> cancelOrder(UUID id, boolean restock) {
+        if (!DatabaseDialect.isPostgres(entityManager)) {
+            return this.cancelOrderPortable(id, restock);
+        }
+        
+        List<?> rows = entityManager.createNativeQuery(CANCEL_QUERY)
+                                    .setParameter("id", id)
+                                    .setParameter("cancelled", OrderStatus.CANCELLED.name())
+                                    .setParameter("restock", restock)
+                                    .getResultList();
+        if (rows.isEmpty()) return Optional.empty();
+        
+        Object[] columns = (Object[]) rows.get(0);
+        return Optional.of(new CancelledOrder(
+            (UUID) columns[0],
+            (UUID) columns[1],
+            (UUID) columns[2],
+            ((Number) columns[3]).intValue(),
+            ((Number) columns[4]).doubleValue()
+        ));
+    }
+    
+    private Optional<CancelledOrder> cancelOrderPortable(UUID id, boolean restock) {
+        OrderEntity order = entityManager.find(
+            OrderEntity.class, id, LockModeType.PESSIMISTIC_WRITE);
+        if (order == null || order.getStatus() == OrderStatus.CANCELLED) return Optional.empty();
+        
+        CancelledOrder cancelled = new CancelledOrder(
+            order.getId(),
+            order.getUser().getId(),
+            order.getProduct().getId(),
+            order.getAmount(),
+            order.getUnitPrice() != null ? order.getUnitPrice() : order.getProduct().getPrice()
+        );
+        
+        // Amount 0 does not pass the entity validation, so the order is updated with JPQL too.
+        entityManager.createQuery(
+            "UPDATE OrderEntity ord SET ord.status = :status, ord.amount = 0, " +
+                "ord.version = ord.version + 1 WHERE ord.id = :id"
+        ).setParameter("status", OrderStatus.CANCELLED)
+         .setParameter("id", id)
+         .executeUpdate();
+        
+        if (restock) {
+            entityManager.createQuery(
+                "UPDATE PRODUCT prod SET prod.stock = prod.stock + :amount, " +
+                    "prod.version = prod.version + 1 WHERE prod.id = :id"
+            ).setParameter("amount", cancelled.amount())
+             .setParameter("id", cancelled.productId())
+             .executeUpdate();
+        }
+        return Optional.of(cancelled);
+    }
+}
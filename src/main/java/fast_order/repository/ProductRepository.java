@@ -4,6 +4,9 @@ import fast_order.entity.ProductEntity;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Modifying;
@@ -12,29 +15,108 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 @Repository
 public interface ProductRepository extends JpaRepository<ProductEntity, UUID>,
-    JpaSpecificationExecutor<ProductEntity> {
+    JpaSpecificationExecutor<ProductEntity>, ProductRepositoryCustom {
+    String SEARCH_QUERY = "SELECT prod.* FROM fast_order_schema.PRODUCTS prod, " +
+        "websearch_to_tsquery('simple', :text) query " +
+        "WHERE prod.search_vector @@ query OR lower(prod.name) % lower(:text) " +
+        "ORDER BY ts_rank_cd(prod.search_vector, query) + " +
+        "similarity(lower(prod.name), lower(:text)) DESC, prod.product_id";
+    
+    String SEARCH_COUNT_QUERY = "SELECT count(*) FROM fast_order_schema.PRODUCTS prod " +
+        "WHERE prod.search_vector @@ websearch_to_tsquery('simple', :text) " +
+        "OR lower(prod.name) % lower(:text)";
+    
     Optional<ProductEntity> findProductByName(
         @NotNull(message = "{field.null}") @NotEmpty(message = "{field.empty}")
         @Size(min = 4, max = 60, message = "{product.name.size}") String name
     );
     
+    /*
+     * FOR NO KEY UPDATE: the row is locked against other stock writers, but not against the
+     * FOR KEY SHARE lock an ORDERS insert takes on it for its foreign key check.
+     */
+    @Query(
+        value = "SELECT stock FROM fast_order_schema.PRODUCTS WHERE product_id = :id " +
+            "FOR NO KEY UPDATE",
+        nativeQuery = true
+    )
+    Optional<Integer> lockStock(@Param("id") UUID id);
+    
+    /*
+     * Full-text match on the weighted name and description (search_vector, see
+     * schema-postgresql.sql) or a trigram match on the name for misspelled searches. Both are
+     * answered from GIN indexes; the most relevant products come first.
+     */
+    @Query(value = SEARCH_QUERY, countQuery = SEARCH_COUNT_QUERY, nativeQuery = true)
+    Page<ProductEntity> searchProducts(@Param("text") String text, Pageable pageable);
+    
+    // Same search without the count: one extra row tells whether there is a next page.
+    @Query(value = SEARCH_QUERY, nativeQuery = true)
+    Slice<ProductEntity> searchProductsSlice(@Param("text") String text, Pageable pageable);
+    
+    /*
+     * Every product with its number of orders since the given date, for the suggest index.
+     */
+    @Query(
+        "SELECT prod.id AS id, prod.name AS name, COUNT(ord) AS popularity FROM PRODUCT prod " +
+            "LEFT JOIN OrderEntity ord ON ord.product = prod AND ord.createdAt >= :since " +
+            "GROUP BY prod.id, prod.name"
+    )
+    List<ProductPopularity> findPopularity(@Param("since") LocalDateTime since);
+    
+    @Query("SELECT prod.stockShards FROM PRODUCT prod WHERE prod.id = :id")
+    Optional<Integer> findStockShards(@Param("id") UUID id);
+    
+    @Query("SELECT prod.id AS id, prod.price AS price FROM PRODUCT prod WHERE prod.id IN :ids")
+    List<ProductPrice> findPrices(@Param("ids") Collection<UUID> ids);
+    
+    /*
+     * Inventory ledger flush: the ledger already owns the stock, so the version is not changed.
+     */
     @Modifying
     @Transactional
-    @Query("UPDATE PRODUCT prod SET prod.price = :price WHERE prod.id = :id")
-    int updateProductPrice(@Param("id") UUID id, @Param("price") Double price);
+    @Query("UPDATE PRODUCT prod SET prod.stock = prod.stock + :delta WHERE prod.id = :id")
+    int applyStockDelta(@Param("id") UUID id, @Param("delta") Integer delta);
     
     @Modifying
     @Transactional
-    @Query("UPDATE PRODUCT prod SET prod.stock = prod.stock + :amount WHERE prod.id = :id")
-    int increaseProductStock(@Param("id") UUID id, @Param("amount") Integer amount);
+    @Query(
+        "UPDATE PRODUCT prod SET prod.stock = :stock, prod.stockShards = :shards " +
+            "WHERE prod.id = :id"
+    )
+    int updateStockShards(
+        @Param("id") UUID id,
+        @Param("stock") Integer stock,
+        @Param("shards") Integer shards
+    );
     
     @Modifying
     @Transactional
-    @Query("UPDATE PRODUCT prod SET prod.stock = prod.stock - :amount WHERE prod.id = :id")
+    @Query(
+        "UPDATE PRODUCT prod SET prod.stock = prod.stock - :amount, " +
+            "prod.version = prod.version + 1 WHERE prod.id = :id AND prod.stock >= :amount"
+    )
     int decreaseProductStock(@Param("id") UUID id, @Param("amount") Integer amount);
+    
+    interface ProductPopularity {
+        UUID getId();
+        
+        String getName();
+        
+        Long getPopularity();
+    }
+    
+    interface ProductPrice {
+        UUID getId();
+        
+        Double getPrice();
+    }
 }
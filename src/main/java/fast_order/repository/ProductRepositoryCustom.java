@@ -0,0 +1,44 @@
+package fast_order.repository;
+
+import fast_order.entity.ProductEntity;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+public interface ProductRepositoryCustom {
+    /**
+     * Page of the products matching the specification, without counting them. One extra row is
+     * read to know whether there is a next page.
+     * @param spec Filters to apply.
+     * @param pageable Page and sort requested.
+     */
+    Slice<ProductEntity> findSlice(Specification<ProductEntity> spec, Pageable pageable);
+    
+    /**
+     * Number of products estimated by Postgres from the table statistics, without reading it.
+     * Falls back to an exact count on other databases or when the table has not been analyzed yet.
+     */
+    long estimateCount();
+    
+    /**
+     * Sets the price of every product of the map in one statement on Postgres
+     * ({@code UPDATE ... FROM (VALUES ...) RETURNING}), one per product elsewhere.
+     * @param prices New price per product ID.
+     * @return The updated products as stored after the update, detached. Unknown IDs are
+     * left out.
+     */
+    List<ProductEntity> updatePrices(Map<UUID, Double> prices);
+    
+    /**
+     * Adds to the stock kept in {@code PRODUCTS} of every product of the map, the same way as
+     * {@link #updatePrices(Map)}.
+     * @param amounts Amount to add per product ID.
+     * @return The updated products as stored after the update, detached. Unknown IDs are
+     * left out.
+     */
+    List<ProductEntity> increaseStocks(Map<UUID, Integer> amounts);
+}
@@ -0,0 +1,157 @@
+package fast_order.repository;
+
+import fast_order.entity.ProductEntity;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+public class ProductRepositoryCustomImpl implements ProductRepositoryCustom {
+    private static final String PRODUCT_COLUMNS =
+        "prod.product_id, prod.name, prod.stock, prod.price, prod.description, " +
+            "prod.stock_shards, prod.version";
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Override
+    public Slice<ProductEntity> findSlice(Specification<ProductEntity> spec, Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ProductEntity> query = cb.createQuery(ProductEntity.class);
+        Root<ProductEntity> root = query.from(ProductEntity.class);
+        
+        query.select(root)
+             .where(spec.toPredicate(root, query, cb))
+             .orderBy(QueryUtils.toOrders(pageable.getSort(), root, cb));
+        
+        List<ProductEntity> products = entityManager.createQuery(query)
+                                                    .setFirstResult((int) pageable.getOffset())
+                                                    .setMaxResults(pageable.getPageSize() + 1)
+                                                    .getResultList();
+        
+        boolean hasNext = products.size() > pageable.getPageSize();
+        List<ProductEntity> content = hasNext
+            ? products.subList(0, pageable.getPageSize())
+            : products;
+        
+        return new SliceImpl<>(content, pageable, hasNext);
+    }
+    
+    @Override
+    public long estimateCount() {
+        if (DatabaseDialect.isPostgres(entityManager)) {
+            Number estimate = (Number) entityManager.createNativeQuery(
+                "SELECT reltuples FROM pg_class " +
+                    "WHERE oid = to_regclass('fast_order_schema.products')"
+            ).getSingleResult();
+            
+            // reltuples is -1 until the table is first vacuumed or analyzed.
+            if (estimate.longValue() >= 0) return estimate.longValue();
+        }
+        
+        return entityManager.createQuery("SELECT count(prod) FROM PRODUCT prod", Long.class)
+                            .getSingleResult();
+    }
+    
+    @Override
+    @Transactional
+    public List<ProductEntity> updatePrices(Map<UUID, Double> prices) {
+        return this.updateReturning(
+            prices,
+            "price = val.value",
+            "double precision",
+            "prod.price = :value"
+        );
+    }
+    
+    @Override
+    @Transactional
+    public List<ProductEntity> increaseStocks(Map<UUID, Integer> amounts) {
+        return this.updateReturning(
+            amounts,
+            "stock = prod.stock + val.value",
+            "integer",
+            "prod.stock = prod.stock + :value"
+        );
+    }
+    
+    /*
+     * Postgres: one UPDATE ... FROM (VALUES ...) RETURNING, with a (id, value) row per entry. The
+     * casts give the VALUES columns their types, which Postgres cannot infer from the parameters.
+     * Elsewhere: one JPQL update per entry and a select of the updated rows.
+     * -
+     * The rows are mapped to detached entities: a managed instance already loaded in the
+     * persistence context would still hold the values from before the update.
+     */
+    private <T> List<ProductEntity> updateReturning(
+        Map<UUID, T> values,
+        String sqlAssignment,
+        String sqlValueType,
+        String jpqlAssignment
+    )
+    {
+        if (values.isEmpty()) return List.of();
+        
+        if (!DatabaseDialect.isPostgres(entityManager)) {
+            values.forEach((id, value) -> entityManager.createQuery(
+                "UPDATE PRODUCT prod SET " + jpqlAssignment + ", prod.version = prod.version + 1 " +
+                    "WHERE prod.id = :id"
+            ).setParameter("id", id).setParameter("value", value).executeUpdate());
+            
+            return this.toProducts(entityManager.createNativeQuery(
+                "SELECT " + PRODUCT_COLUMNS + " FROM fast_order_schema.PRODUCTS prod " +
+                    "WHERE prod.product_id IN (:ids)"
+            ).setParameter("ids", values.keySet()).getResultList());
+        }
+        
+        String rows = values.keySet().stream()
+                            .map((id) -> "(CAST(? AS uuid), CAST(? AS %s))".formatted(sqlValueType))
+                            .collect(Collectors.joining(", "));
+        
+        Query query = entityManager.createNativeQuery(
+            "UPDATE fast_order_schema.PRODUCTS prod SET " + sqlAssignment + ", " +
+                "version = prod.version + 1 FROM (VALUES " + rows + ") AS val(id, value) " +
+                "WHERE prod.product_id = val.id RETURNING " + PRODUCT_COLUMNS
+        );
+        
+        int position = 1;
+        for (Map.Entry<UUID, T> value : values.entrySet()) {
+            query.setParameter(position++, value.getKey());
+            query.setParameter(position++, value.getValue());
+        }
+        
+        return this.toProducts(query.getResultList());
+    }
+    
+    private List<ProductEntity> toProducts(List<?> rows) {
+        return rows.stream().map((row) -> {
+            Object[] columns = (Object[]) row;
+            UUID id = columns[0] instanceof UUID uuid
+                ? uuid
+                : UUID.fromString(columns[0].toString());
+            
+            return ProductEntity.builder()
+                                .id(id)
+                                .name((String) columns[1])
+                                .stock(((Number) columns[2]).intValue())
+                                .price(((Number) columns[3]).doubleValue())
+                                .description((String) columns[4])
+                                .stockShards(((Number) columns[5]).intValue())
+                                .version(((Number) columns[6]).longValue())
+                                .build();
+        }).toList();
+    }
+}
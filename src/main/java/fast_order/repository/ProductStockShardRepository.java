@@ -0,0 +1,58 @@
+package fast_order.repository;
+
+import fast_order.entity.ProductStockShardEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface ProductStockShardRepository extends JpaRepository<ProductStockShardEntity, UUID> {
+    @Query(
+        "SELECT COALESCE(SUM(shard.stock), 0) FROM PRODUCT_STOCK_SHARD shard " +
+            "WHERE shard.productId = :productId"
+    )
+    Long sumStock(@Param("productId") UUID productId);
+    
+    /*
+     * Always locked in shard order, after the product row (FOR NO KEY UPDATE, see
+     * ProductRepository.lockStock). An order that reserved a single shard only needs a
+     * FOR KEY SHARE lock on the product row for its ORDERS insert, which that lock does not block,
+     * so it never waits on a writer that is waiting for its shard.
+     * Native so the stock is read from the row and not from an entity already in the session.
+     */
+    @Query(
+        value = "SELECT shard, stock FROM fast_order_schema.PRODUCT_STOCK_SHARDS " +
+            "WHERE product_id = :productId ORDER BY shard ASC FOR UPDATE",
+        nativeQuery = true
+    )
+    List<ShardStock> lockShards(@Param("productId") UUID productId);
+    
+    @Modifying
+    @Transactional
+    @Query(
+        "UPDATE PRODUCT_STOCK_SHARD shard SET shard.stock = shard.stock - :amount " +
+            "WHERE shard.productId = :productId AND shard.shard = :shard AND shard.stock >= :amount"
+    )
+    int decreaseShardStock(
+        @Param("productId") UUID productId,
+        @Param("shard") Integer shard,
+        @Param("amount") Integer amount
+    );
+    
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM PRODUCT_STOCK_SHARD shard WHERE shard.productId = :productId")
+    int deleteByProductId(@Param("productId") UUID productId);
+    
+    interface ShardStock {
+        Integer getShard();
+        
+        Integer getStock();
+    }
+}
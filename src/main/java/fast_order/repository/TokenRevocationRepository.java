@@ -0,0 +1,24 @@
+package fast_order.repository;
+
+import fast_order.entity.TokenRevocationEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface TokenRevocationRepository extends JpaRepository<TokenRevocationEntity, UUID> {
+    @Query("SELECT rev FROM TOKEN_REVOCATION rev WHERE rev.revokedAt >= :since")
+    List<TokenRevocationEntity> findRevokedSince(@Param("since") LocalDateTime since);
+    
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM TOKEN_REVOCATION rev WHERE rev.revokedAt < :before")
+    int deleteExpired(@Param("before") LocalDateTime before);
+}
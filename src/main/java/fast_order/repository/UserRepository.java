@@ -4,12 +4,79 @@ import fast_order.entity.UserEntity;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotNull;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 @Repository
 public interface UserRepository extends JpaRepository<UserEntity, UUID> {
     Optional<UserEntity> findUserByEmail(@NotNull @Email String email);
+    
+    @Query("SELECT us.id FROM USER us WHERE us.id IN :ids")
+    Set<UUID> findExistingIds(@Param("ids") Collection<UUID> ids);
+    
+    @Query("SELECT us.password FROM USER us WHERE us.id = :id")
+    Optional<String> findPasswordHash(@Param("id") UUID id);
+    
+    @Query("SELECT us.tokenVersion FROM USER us WHERE us.id = :id")
+    Optional<Long> findTokenVersion(@Param("id") UUID id);
+    
+    /*
+     * Rehash at login: the password itself is unchanged, so the tokens stay valid.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE USER us SET us.password = :password WHERE us.email = :email")
+    int updatePassword(@Param("email") String email, @Param("password") String password);
+    
+    @Modifying
+    @Query("UPDATE USER us SET us.tokenVersion = us.tokenVersion + 1 WHERE us.id = :id")
+    int incrementTokenVersion(@Param("id") UUID id);
+    
+    @Modifying
+    @Query(
+        "UPDATE USER us SET us.totalSpent = CASE WHEN us.totalSpent + :delta < 0 THEN 0.0 " +
+            "ELSE us.totalSpent + :delta END WHERE us.id = :id"
+    )
+    int addTotalSpent(@Param("id") UUID id, @Param("delta") Double delta);
+    
+    /*
+     * Difference between the total of every user recomputed from the orders at their unit price
+     * (cancelled orders keep amount 0) and the stored total, for the users that drifted, in ID
+     * order.
+     */
+    @Query(
+        value = "SELECT us.user_id AS \"userId\", " +
+            "COALESCE(SUM(o.amount * COALESCE(o.unit_price, p.price)), 0) - us.total_spent " +
+            "AS \"drift\" " +
+            "FROM fast_order_schema.USERS us " +
+            "LEFT JOIN fast_order_schema.ORDERS o ON o.user_id = us.user_id " +
+            "LEFT JOIN fast_order_schema.PRODUCTS p ON p.product_id = o.product_id " +
+            "GROUP BY us.user_id, us.total_spent " +
+            "HAVING abs(COALESCE(SUM(o.amount * COALESCE(o.unit_price, p.price)), 0) - " +
+            "us.total_spent) > 0.005 " +
+            "ORDER BY us.user_id",
+        nativeQuery = true
+    )
+    List<SpendingDrift> findTotalSpentDrift();
+    
+    /*
+     * First statement of a REPEATABLE READ transaction: fixes the snapshot read by the rest of it.
+     */
+    @Query(value = "SELECT 1", nativeQuery = true)
+    int takeSnapshot();
+    
+    interface SpendingDrift {
+        UUID getUserId();
+        
+        Double getDrift();
+    }
 }
@@ -0,0 +1,149 @@
+package fast_order.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import fast_order.commons.enums.APIError;
+import fast_order.commons.enums.OrderStatus;
+import fast_order.dto.OrderTO;
+import fast_order.exception.APIRequestException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Accepts orders for background processing.
+ * -
+ * An accepted order gets its ID immediately and is queued; a bounded pool of workers then runs the
+ * regular {@link OrderService#createOrder(OrderTO)} path (user and product checks, stock
+ * reservation, insert and notification). The queue absorbs bursts without holding Tomcat threads,
+ * and the pool size caps the database connections used by the background work.
+ * -
+ * Until the order is persisted {@link #findAcceptedOrder(UUID)} reports it as pending; if it
+ * fails, the failure is reported instead for {@code order.async.result-ttl}. Pending orders are
+ * bounded by the queue and never evicted (weight 0); failures are capped at
+ * {@code order.async.queue-capacity}, beyond which some are evicted before their TTL.
+ * *
+ * Accepted orders live in memory until processed: orders still queued when the instance crashes
+ * are lost, and a client that gets 404 after the TTL should submit them again.
+ */
+@Service
+public class AsyncOrderService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncOrderService.class);
+    
+    private final OrderService orderService;
+    private final ThreadPoolExecutor workers;
+    private final Cache<UUID, AcceptedOrder> acceptedOrders;
+    
+    public AsyncOrderService(
+        OrderService orderService,
+        MeterRegistry meterRegistry,
+        @Value("${order.async.workers}") Integer workerCount,
+        @Value("${order.async.queue-capacity}") Integer queueCapacity,
+        @Value("${order.async.result-ttl}") Duration resultTtl
+    )
+    {
+        this.orderService = orderService;
+        
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(
+            workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            (runnable) -> new Thread(runnable, "order-worker-" + threadNumber.incrementAndGet()),
+            new ThreadPoolExecutor.AbortPolicy()
+        );
+        this.acceptedOrders = Caffeine.newBuilder()
+            .expireAfterWrite(resultTtl)
+            .maximumWeight(queueCapacity)
+            .weigher((UUID id, AcceptedOrder accepted) -> accepted.failure() == null ? 0 : 1)
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, acceptedOrders, "async-orders");
+        
+        Gauge.builder("order.async.queue.size", workers, (pool) -> pool.getQueue().size())
+             .description("Accepted orders waiting for a worker")
+             .register(meterRegistry);
+    }
+    
+    /**
+     * Queues the order for processing.
+     * @param order Validated order data.
+     * @return Accepted order, with its ID and status pending.
+     */
+    public OrderTO acceptOrder(OrderTO order) {
+        UUID id = UUID.randomUUID();
+        
+        order.setId(id);
+        order.setStatus(OrderStatus.PENDING);
+        order.setCreatedAt(LocalDateTime.now());
+        acceptedOrders.put(id, new AcceptedOrder(order, null));
+        
+        try {
+            workers.execute(() -> this.process(order));
+        } catch (RejectedExecutionException ex) {
+            acceptedOrders.invalidate(id);
+            
+            APIError.TOO_MANY_REQUESTS.setTitle("Order queue full");
+            APIError.TOO_MANY_REQUESTS.setMessage(
+                "Too many orders are waiting to be processed. Please try again later.");
+            throw new APIRequestException(APIError.TOO_MANY_REQUESTS);
+        }
+        
+        return order;
+    }
+    
+    /**
+     * Order accepted by this instance that is not persisted yet.
+     * @param id Order ID returned when the order was accepted.
+     * @return The pending order, or empty if it is not (or no longer) held here.
+     * @throws APIRequestException If the order was accepted but could not be created.
+     */
+    public Optional<OrderTO> findAcceptedOrder(UUID id) {
+        AcceptedOrder accepted = acceptedOrders.getIfPresent(id);
+        
+        if (accepted == null) return Optional.empty();
+        if (accepted.failure() != null) throw accepted.failure();
+        
+        return Optional.of(accepted.order());
+    }
+    
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        workers.shutdown();
+        if (!workers.awaitTermination(30, TimeUnit.SECONDS)) {
+            LOGGER.warn("{} accepted orders were not processed before shutdown", workers.getQueue().size());
+        }
+    }
+    
+    private void process(OrderTO order) {
+        UUID id = order.getId();
+        
+        try {
+            orderService.createOrder(order);
+            acceptedOrders.invalidate(id);
+        } catch (APIRequestException ex) {
+            acceptedOrders.put(id, new AcceptedOrder(order, ex));
+        } catch (Exception ex) {
+            LOGGER.error("Accepted order {} could not be processed", id, ex);
+            acceptedOrders.put(
+                id, new AcceptedOrder(order, new APIRequestException(APIError.INTERNAL_SERVER_ERROR)));
+        }
+    }
+    
+    private record AcceptedOrder(OrderTO order, APIRequestException failure) {
+    }
+}
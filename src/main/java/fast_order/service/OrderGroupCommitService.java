@@ -0,0 +1,179 @@
+package fast_order.service;
+
+import fast_order.commons.enums.APIError;
+import fast_order.dto.OrderBatchResultTO;
+import fast_order.dto.OrderTO;
+import fast_order.exception.APIRequestException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Group commit for {@code POST /orders/create}.
+ * -
+ * Orders that arrive at the same time are collected for up to
+ * {@code order.group-commit.max-wait-ms} or {@code order.group-commit.max-batch} orders and
+ * written by one committer thread through
+ * {@link OrderService#createOrders(List)}: one transaction, one stock decrement per product and
+ * JDBC-batched inserts. Each request thread waits for its own result, so the API does not change.
+ * -
+ * Failures:
+ * - An order rejected inside the group (missing user or product, no stock) fails alone, with the
+ * same error as {@link OrderService#createOrder(OrderTO)}.
+ * - If the group transaction fails as a whole, its orders are retried one by one so a single bad
+ * order does not fail the others.
+ * - When the queue is full the order is created directly on the request thread.
+ * *
+ * While a group commits, the next one keeps filling, so under load groups grow up to the maximum
+ * size and the commits per second no longer bound the orders per second.
+ */
+@Service
+@ConditionalOnProperty(name = "order.group-commit.enabled", havingValue = "true")
+public class OrderGroupCommitService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(OrderGroupCommitService.class);
+    
+    private final OrderService orderService;
+    private final BlockingQueue<PendingOrder> queue;
+    private final Thread committer;
+    private final DistributionSummary groupSize;
+    private final Long maxWaitNanos;
+    private final Integer maxBatch;
+    
+    private volatile boolean running = true;
+    
+    public OrderGroupCommitService(
+        OrderService orderService,
+        MeterRegistry meterRegistry,
+        @Value("${order.group-commit.max-wait-ms}") Long maxWaitMs,
+        @Value("${order.group-commit.max-batch}") Integer maxBatch,
+        @Value("${order.group-commit.queue-capacity}") Integer queueCapacity
+    )
+    {
+        this.orderService = orderService;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        this.maxBatch = maxBatch;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        this.groupSize = DistributionSummary.builder("order.group-commit.size")
+                                            .description("Orders written per group commit")
+                                            .register(meterRegistry);
+        
+        this.committer = new Thread(this::run, "order-group-commit");
+        this.committer.setDaemon(true);
+        this.committer.start();
+    }
+    
+    /**
+     * Creates the order as part of the next group commit and waits for its result.
+     * @param order Validated order data.
+     * @return Order created.
+     */
+    public OrderTO createOrder(OrderTO order) {
+        PendingOrder pending = new PendingOrder(order, new CompletableFuture<>());
+        
+        if (!running || !queue.offer(pending)) return orderService.createOrder(order);
+        
+        try {
+            return pending.result().join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof APIRequestException cause) throw cause;
+            throw new APIRequestException(APIError.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        // The committer finishes the group in progress and stops at its next poll.
+        running = false;
+        committer.join(TimeUnit.SECONDS.toMillis(30));
+        
+        // Orders left behind are created one by one on this thread.
+        List<PendingOrder> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        remaining.forEach(this::commitAlone);
+    }
+    
+    private void run() {
+        List<PendingOrder> group = new ArrayList<>(maxBatch);
+        
+        while (running) {
+            try {
+                PendingOrder first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                group.add(first);
+                
+                long deadline = System.nanoTime() + maxWaitNanos;
+                while (group.size() < maxBatch) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingOrder next = remaining > 0
+                        ? queue.poll(remaining, TimeUnit.NANOSECONDS)
+                        : null;
+                    if (next == null) break;
+                    
+                    group.add(next);
+                    queue.drainTo(group, maxBatch - group.size());
+                }
+                
+                this.commit(group);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                group.forEach(this::commitAlone);
+                return;
+            } catch (Exception ex) {
+                LOGGER.error("Order group commit failed", ex);
+                group.forEach((pending) -> pending.result().completeExceptionally(ex));
+            } finally {
+                group.clear();
+            }
+        }
+    }
+    
+    private void commit(List<PendingOrder> group) {
+        groupSize.record(group.size());
+        
+        List<OrderBatchResultTO> results;
+        try {
+            results = orderService.createOrders(group.stream().map(PendingOrder::order).toList());
+        } catch (APIRequestException ex) {
+            LOGGER.warn("Order group of {} failed, creating its orders one by one", group.size());
+            group.forEach(this::commitAlone);
+            return;
+        }
+        
+        for (OrderBatchResultTO result : results) {
+            PendingOrder pending = group.get(result.getIndex());
+            
+            if (Boolean.TRUE.equals(result.getSuccess())) {
+                pending.result().complete(result.getOrder());
+            } else {
+                APIError error = result.getError();
+                error.setTitle(result.getTitle());
+                error.setMessage(result.getMessage());
+                pending.result().completeExceptionally(new APIRequestException(error));
+            }
+        }
+    }
+    
+    private void commitAlone(PendingOrder pending) {
+        try {
+            pending.result().complete(orderService.createOrder(pending.order()));
+        } catch (Exception ex) {
+            pending.result().completeExceptionally(ex);
+        }
+    }
+    
+    private record PendingOrder(OrderTO order, CompletableFuture<OrderTO> result) {
+    }
+}
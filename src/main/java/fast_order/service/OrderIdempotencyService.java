@@ -0,0 +1,195 @@
+package fast_order.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import fast_order.commons.enums.APIError;
+import fast_order.dto.OrderTO;
+import fast_order.entity.IdempotencyKeyEntity;
+import fast_order.exception.APIRequestException;
+import fast_order.repository.IdempotencyKeyRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs order creation at most once per {@code Idempotency-Key} and user.
+ * -
+ * Keys are scoped to the authenticated user: the same header value sent by another user is
+ * another key, so a client can never be answered with someone else's order.
+ * -
+ * Lookup order for a key:
+ * - In-memory cache of completed keys (bounded, evicted after {@code order.idempotency.ttl}).
+ * - Request in flight on this instance with the same key: wait for its result.
+ * - {@code IDEMPOTENCY_KEYS} table: keys completed by another instance or before a restart.
+ * - Otherwise the key is inserted and then the order created, in the same transaction. A request
+ * with the same key on another instance blocks on that insert until the first transaction ends,
+ * then fails on the primary key and replays the stored order.
+ * *
+ * A key sent again with a different order body is rejected. Failed attempts are not stored, so
+ * the client can retry them with the same key.
+ */
+@Service
+public class OrderIdempotencyService {
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final OrderService orderService;
+    private final TransactionTemplate transactionTemplate;
+    private final Cache<String, IdempotentOrder> completed;
+    private final Map<String, CompletableFuture<IdempotentOrder>> inFlight = new ConcurrentHashMap<>();
+    private final Duration ttl;
+    
+    @Value("${order.idempotency.wait-timeout-ms}")
+    private Long waitTimeoutMs;
+    
+    public OrderIdempotencyService(
+        IdempotencyKeyRepository idempotencyKeyRepository,
+        OrderService orderService,
+        PlatformTransactionManager transactionManager,
+        @Value("${order.idempotency.ttl}") Duration ttl,
+        @Value("${order.idempotency.cache-size}") Long cacheSize
+    )
+    {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.orderService = orderService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ttl = ttl;
+        this.completed = Caffeine.newBuilder()
+                                 .maximumSize(cacheSize)
+                                 .expireAfterWrite(ttl)
+                                 .build();
+    }
+    
+    /**
+     * Creates the order once for the given key and returns the same order for every retry.
+     * @param owner Username of the authenticated user sending the key.
+     * @param key Value of the {@code Idempotency-Key} header.
+     * @param order Order to create.
+     * @return Order created by the first request of this user with this key.
+     */
+    public OrderTO createOrder(String owner, String key, OrderTO order) {
+        if (key.isBlank() || key.length() > 255) {
+            APIError.BAD_REQUEST.setTitle("Invalid Idempotency-Key");
+            APIError.BAD_REQUEST.setMessage("The Idempotency-Key must have between 1 and 255 characters.");
+            throw new APIRequestException(APIError.BAD_REQUEST);
+        }
+        
+        String fingerprint = this.fingerprint(order);
+        String scopedKey = sha256(owner + "\n" + key);
+        IdempotentOrder result = completed.getIfPresent(scopedKey);
+        
+        if (result == null) {
+            CompletableFuture<IdempotentOrder> execution = new CompletableFuture<>();
+            CompletableFuture<IdempotentOrder> running = inFlight.putIfAbsent(scopedKey, execution);
+            
+            if (running != null) {
+                result = this.await(running);
+            } else {
+                try {
+                    result = this.execute(scopedKey, fingerprint, order);
+                    completed.put(scopedKey, result);
+                    execution.complete(result);
+                } catch (RuntimeException ex) {
+                    execution.completeExceptionally(ex);
+                    throw ex;
+                } finally {
+                    inFlight.remove(scopedKey, execution);
+                }
+            }
+        }
+        
+        if (!result.fingerprint().equals(fingerprint)) {
+            APIError.UNPROCESSABLE_ENTITY.setTitle("Idempotency-Key reused");
+            APIError.UNPROCESSABLE_ENTITY.setMessage(
+                "The Idempotency-Key was already used with a different order.");
+            throw new APIRequestException(APIError.UNPROCESSABLE_ENTITY);
+        }
+        
+        return result.order();
+    }
+    
+    @Scheduled(fixedDelayString = "${order.idempotency.purge-interval-ms}")
+    public void purgeExpiredKeys() {
+        idempotencyKeyRepository.deleteExpired(LocalDateTime.now().minus(ttl));
+    }
+    
+    private IdempotentOrder execute(String key, String fingerprint, OrderTO order) {
+        try {
+            Optional<IdempotencyKeyEntity> stored = idempotencyKeyRepository.findById(key);
+            if (stored.isPresent()) return this.replay(stored.get());
+            
+            return transactionTemplate.execute((status) -> {
+                // The key is claimed first, so the order gets the ID stored with it.
+                UUID orderId = UUID.randomUUID();
+                idempotencyKeyRepository.insert(key, fingerprint, orderId, LocalDateTime.now());
+                
+                order.setId(orderId);
+                return new IdempotentOrder(fingerprint, orderService.createOrder(order));
+            });
+        } catch (DataIntegrityViolationException ex) {
+            // Another request claimed the key first and committed: its order is the answer.
+            return idempotencyKeyRepository.findById(key)
+                                           .map(this::replay)
+                                           .orElseThrow(() -> new APIRequestException(
+                                               APIError.DATABASE_ERROR));
+        } catch (APIRequestException ex) {
+            throw ex;
+        } catch (DataAccessException ex) {
+            throw new APIRequestException(APIError.DATABASE_ERROR);
+        }
+    }
+    
+    private IdempotentOrder replay(IdempotencyKeyEntity stored) {
+        return new IdempotentOrder(
+            stored.getFingerprint(),
+            orderService.findOrderById(stored.getOrderId())
+        );
+    }
+    
+    private IdempotentOrder await(CompletableFuture<IdempotentOrder> running) {
+        try {
+            return running.get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof APIRequestException cause) throw cause;
+            throw new APIRequestException(APIError.INTERNAL_SERVER_ERROR);
+        } catch (TimeoutException ex) {
+            throw new APIRequestException(APIError.TIMEOUT_ERROR);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new APIRequestException(APIError.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
+    private String fingerprint(OrderTO order) {
+        return sha256(order.getUserId() + "|" + order.getProductId() + "|" + order.getAmount());
+    }
+    
+    private static String sha256(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+    
+    private record IdempotentOrder(String fingerprint, OrderTO order) {
+    }
+}
@@ -1,26 +1,50 @@
 package fast_order.service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fast_order.dto.CursorPageTO;
 import fast_order.dto.KafkaNotificationTO;
+import fast_order.dto.OrderBatchResultTO;
+import fast_order.dto.OrderFilterTO;
 import fast_order.dto.OrderTO;
-import fast_order.dto.ProductTO;
-import fast_order.dto.UserTO;
 import fast_order.entity.OrderEntity;
+import fast_order.entity.ProductEntity;
+import fast_order.entity.UserEntity;
 import fast_order.commons.enums.APIError;
 import fast_order.commons.enums.OrderStatus;
 import fast_order.exception.APIRequestException;
 import fast_order.mapper.OrderMapper;
-import fast_order.mapper.ProductMapper;
-import fast_order.mapper.UserMapper;
 import fast_order.repository.OrderRepository;
-import fast_order.service.kafka.KafkaProducerService;
+import fast_order.service.inventory.InventoryLedger;
+import fast_order.service.kafka.OrderOutboxService;
 import fast_order.service.use_case.OrderServiceUseCase;
+import fast_order.utils.OrderSpecification;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Service
 public class OrderService implements OrderServiceUseCase {
@@ -28,33 +52,77 @@ public class OrderService implements OrderServiceUseCase {
     private final OrderMapper orderMapper;
     private final UserService userService;
     private final ProductService productService;
-    private final UserMapper userMapper;
-    private final ProductMapper productMapper;
-    private final KafkaProducerService kafkaProducer;
+    private final ProductCache productCache;
+    private final InventoryLedger inventoryLedger;
+    private final OrderOutboxService orderOutbox;
+    private final UserSpendingService userSpending;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    
+    @Value("${order.batch.max-size}")
+    private Integer batchMaxSize;
+    
+    @Value("${order.page.max-size}")
+    private Integer pageMaxSize;
+    
+    @Value("${order.export.fetch-size}")
+    private Integer exportFetchSize;
     
     public OrderService(
         OrderRepository orderRepository,
         OrderMapper orderMapper,
         UserService userService,
         ProductService productService,
-        UserMapper userMapper,
-        ProductMapper productMapper,
-        KafkaProducerService kafkaProducer
+        ProductCache productCache,
+        ObjectProvider<InventoryLedger> inventoryLedger,
+        OrderOutboxService orderOutbox,
+        UserSpendingService userSpending,
+        Validator validator,
+        ObjectMapper objectMapper
     )
     {
         this.orderRepository = orderRepository;
         this.orderMapper = orderMapper;
         this.userService = userService;
         this.productService = productService;
-        this.userMapper = userMapper;
-        this.productMapper = productMapper;
-        this.kafkaProducer = kafkaProducer;
+        this.productCache = productCache;
+        // With the inventory ledger the stock of a cancelled order is given back through it.
+        this.inventoryLedger = inventoryLedger.getIfAvailable();
+        this.orderOutbox = orderOutbox;
+        this.userSpending = userSpending;
+        this.validator = validator;
+        this.objectMapper = objectMapper.copy()
+                                        .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
     }
     
     @Override
-    public List<OrderTO> findAllOrders() {
+    public CursorPageTO<OrderTO> findOrders(OrderFilterTO filter, String cursor, Integer size) {
         try {
-            return orderMapper.toDTOList(orderRepository.findAll());
+            if (size == null || size < 1 || size > pageMaxSize) {
+                APIError.BAD_REQUEST.setTitle("Invalid page size");
+                APIError.BAD_REQUEST.setMessage(
+                    "The page size must be between 1 and %d.".formatted(pageMaxSize));
+                throw new APIRequestException(APIError.BAD_REQUEST);
+            }
+            
+            Specification<OrderEntity> spec = OrderSpecification.filterOrders(filter)
+                                                                .and(OrderSpecification.after(cursor));
+            
+            // One extra row tells whether there is a next page without running a count query.
+            List<OrderEntity> orders = orderRepository.findBy(
+                spec,
+                (query) -> query.sortBy(OrderSpecification.KEYSET_SORT).limit(size + 1).all()
+            );
+            
+            boolean hasNext = orders.size() > size;
+            List<OrderEntity> content = hasNext ? orders.subList(0, size) : orders;
+            String nextCursor = hasNext
+                ? OrderSpecification.encodeCursor(content.get(content.size() - 1))
+                : null;
+            
+            return new CursorPageTO<>(orderMapper.toDTOList(content), nextCursor, size);
+        } catch (APIRequestException ex) {
+            throw ex;
         } catch (DataAccessException ex) {
             throw new APIRequestException(APIError.DATABASE_ERROR);
         } catch (Exception ex) {
@@ -62,6 +130,27 @@ public class OrderService implements OrderServiceUseCase {
         }
     }
     
+    @Override
+    @Transactional(readOnly = true)
+    public void exportOrders(OrderFilterTO filter, OutputStream output) {
+        try (
+            Stream<OrderEntity> orders = orderRepository.streamOrders(
+                OrderSpecification.filterOrders(filter),
+                exportFetchSize
+            )
+        )
+        {
+            Iterator<OrderEntity> iterator = orders.iterator();
+            while (iterator.hasNext()) {
+                objectMapper.writeValue(output, orderMapper.toDTO(iterator.next()));
+                output.write('\n');
+            }
+            output.flush();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+    
     @Override
     public OrderTO findOrderById(UUID id) {
         try {
@@ -85,39 +174,35 @@ public class OrderService implements OrderServiceUseCase {
     }
     
     @Override
+    @Transactional
     public OrderTO createOrder(OrderTO order) {
         try {
-            UserTO existingUser = userService.findUserById(order.getUserId());
-            ProductTO existingProduct = productService.findProductById(order.getProductId());
+            OrderRepository.OrderReferences references = this.requireReferences(
+                order.getUserId(), order.getProductId());
             
-            if (existingUser == null && existingProduct == null) {
-                return null;
-            }
-            
-            Boolean hasStock = productService.checkStock(existingProduct, order.getAmount());
-            if (!hasStock) {
-                APIError.RESOURCE_CONFLICT.setTitle("Insufficient stock");
-                APIError.RESOURCE_CONFLICT.setMessage(
-                    "Insufficient stock for the requested product.");
-                
-                throw new APIRequestException(APIError.RESOURCE_CONFLICT);
-            }
+            /*
+             * Guarded decrement (stock >= amount): checking and reserving the stock is a single
+             * statement, so concurrent orders can never oversell the product. The row lock it
+             * takes is held until the order insert below commits.
+             */
+            productService.decreaseProductStock(order.getProductId(), order.getAmount());
             
             OrderEntity orderEntity = orderMapper.toEntity(order);
             
-            orderEntity.setUser(userMapper.toEntity(existingUser));
-            orderEntity.setProduct(productMapper.toEntity(existingProduct));
+            orderEntity.setUser(UserEntity.builder().id(order.getUserId()).build());
+            orderEntity.setProduct(ProductEntity.builder().id(order.getProductId()).build());
+            orderEntity.setUnitPrice(references.getProductPrice());
             orderEntity.setCreatedAt(LocalDateTime.now());
             orderEntity.setStatus(OrderStatus.PENDING);
             
             OrderEntity savedOrder = orderRepository.save(orderEntity);
             
-            productService.decreaseProductStock(existingProduct.getId(), order.getAmount());
+            userSpending.record(order.getUserId(), order.getAmount() * savedOrder.getUnitPrice());
             
             KafkaNotificationTO notification = KafkaNotificationTO.builder().message(
                 "Order created successfully").orderId(savedOrder.getId()).build();
             
-            kafkaProducer.sendNotification(notification);
+            orderOutbox.enqueue(notification);
             
             return orderMapper.toDTO(savedOrder);
         } catch (APIRequestException ex) {
@@ -130,35 +215,202 @@ public class OrderService implements OrderServiceUseCase {
     }
     
     @Override
+    @Transactional
+    public List<OrderBatchResultTO> createOrders(List<OrderTO> orders) {
+        try {
+            if (orders == null || orders.isEmpty() || orders.size() > batchMaxSize) {
+                APIError.BAD_REQUEST.setTitle("Invalid batch size");
+                APIError.BAD_REQUEST.setMessage(
+                    "The batch must contain between 1 and %d orders.".formatted(batchMaxSize));
+                throw new APIRequestException(APIError.BAD_REQUEST);
+            }
+            
+            OrderBatchResultTO[] results = new OrderBatchResultTO[orders.size()];
+            
+            for (int i = 0; i < orders.size(); i++) {
+                OrderTO order = orders.get(i);
+                Set<ConstraintViolation<OrderTO>> violations =
+                    order == null ? Set.of() : validator.validate(order);
+                
+                if (order == null || !violations.isEmpty()) {
+                    Map<String, String> reasons = new HashMap<>();
+                    violations.forEach((violation) -> reasons.put(
+                        violation.getPropertyPath().toString(),
+                        violation.getMessage()
+                    ));
+                    results[i] = this.failedResult(
+                        i,
+                        APIError.INVALID_REQUEST_DATA,
+                        APIError.INVALID_REQUEST_DATA.getTitle(),
+                        APIError.INVALID_REQUEST_DATA.getMessage(),
+                        reasons
+                    );
+                }
+            }
+            
+            Set<UUID> userIds = new HashSet<>();
+            Set<UUID> productIds = new HashSet<>();
+            for (int i = 0; i < orders.size(); i++) {
+                if (results[i] != null) continue;
+                userIds.add(orders.get(i).getUserId());
+                productIds.add(orders.get(i).getProductId());
+            }
+            
+            Set<UUID> existingUsers = userService.findExistingUserIds(userIds);
+            Map<UUID, Double> productPrices = productService.findProductPrices(productIds);
+            
+            /*
+             * Orders are grouped by product so that each product pays a single stock decrement.
+             * Products are reserved in ID order, like every bulk write, so two batches sharing
+             * products lock their rows in the same order and cannot deadlock.
+             */
+            Map<UUID, List<Integer>> ordersByProduct = new TreeMap<>();
+            for (int i = 0; i < orders.size(); i++) {
+                if (results[i] != null) continue;
+                OrderTO order = orders.get(i);
+                
+                if (!existingUsers.contains(order.getUserId())) {
+                    results[i] = this.failedResult(
+                        i,
+                        APIError.RECORD_NOT_FOUND,
+                        "User not found",
+                        "The user you are trying to access does not exist.",
+                        null
+                    );
+                } else if (!productPrices.containsKey(order.getProductId())) {
+                    results[i] = this.failedResult(
+                        i,
+                        APIError.RECORD_NOT_FOUND,
+                        "Product not found",
+                        "The product you are trying to access does not exist.",
+                        null
+                    );
+                } else {
+                    ordersByProduct.computeIfAbsent(order.getProductId(), (key) -> new ArrayList<>())
+                                   .add(i);
+                }
+            }
+            
+            List<Integer> acceptedIndexes = new ArrayList<>();
+            ordersByProduct.forEach((productId, indexes) -> {
+                int totalAmount = indexes.stream().mapToInt((i) -> orders.get(i).getAmount()).sum();
+                
+                if (productService.reserveProductStock(productId, totalAmount)) {
+                    acceptedIndexes.addAll(indexes);
+                    return;
+                }
+                
+                // Not enough stock for the whole group: reserve order by order, in request order.
+                for (Integer i : indexes) {
+                    if (productService.reserveProductStock(productId, orders.get(i).getAmount())) {
+                        acceptedIndexes.add(i);
+                    } else {
+                        results[i] = this.failedResult(
+                            i,
+                            APIError.RESOURCE_CONFLICT,
+                            "Insufficient stock",
+                            "Insufficient stock for the requested product.",
+                            null
+                        );
+                    }
+                }
+            });
+            
+            List<OrderEntity> orderEntities = new ArrayList<>(acceptedIndexes.size());
+            for (Integer i : acceptedIndexes) {
+                OrderTO order = orders.get(i);
+                OrderEntity orderEntity = orderMapper.toEntity(order);
+                
+                orderEntity.setUser(UserEntity.builder().id(order.getUserId()).build());
+                orderEntity.setProduct(ProductEntity.builder().id(order.getProductId()).build());
+                orderEntity.setUnitPrice(productPrices.get(order.getProductId()));
+                orderEntity.setCreatedAt(LocalDateTime.now());
+                orderEntity.setStatus(OrderStatus.PENDING);
+                orderEntities.add(orderEntity);
+            }
+            
+            // Written with JDBC batching (hibernate.jdbc.batch_size) instead of one save per order.
+            List<OrderEntity> savedOrders = orderRepository.saveAll(orderEntities);
+            
+            List<KafkaNotificationTO> notifications = new ArrayList<>(savedOrders.size());
+            for (int k = 0; k < savedOrders.size(); k++) {
+                OrderEntity savedOrder = savedOrders.get(k);
+                int i = acceptedIndexes.get(k);
+                
+                results[i] = OrderBatchResultTO.builder()
+                                               .index(i)
+                                               .success(true)
+                                               .order(orderMapper.toDTO(savedOrder))
+                                               .build();
+                
+                OrderTO order = orders.get(i);
+                userSpending.record(
+                    order.getUserId(), order.getAmount() * savedOrder.getUnitPrice());
+                
+                notifications.add(KafkaNotificationTO.builder().message(
+                    "Order created successfully").orderId(savedOrder.getId()).build());
+            }
+            
+            orderOutbox.enqueueAll(notifications);
+            
+            return Arrays.asList(results);
+        } catch (APIRequestException ex) {
+            throw ex;
+        } catch (DataAccessException ex) {
+            throw new APIRequestException(APIError.DATABASE_ERROR);
+        } catch (Exception ex) {
+            throw new APIRequestException(APIError.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
+    @Override
+    @Transactional
     public OrderTO updateOrder(UUID id, OrderTO order) {
         try {
             OrderTO existingOrder = this.findOrderById(id);
             
-            UserTO existingUser = userService.findUserById(order.getUserId());
-            ProductTO existingProduct = productService.findProductById(order.getProductId());
+            OrderRepository.OrderReferences references = this.requireReferences(
+                order.getUserId(), order.getProductId());
             
-            if (existingUser == null && existingProduct == null) {
-                return null;
+            // The order keeps its unit price unless it moves to another product.
+            double previousSpent = existingOrder.getAmount() * (
+                existingOrder.getUnitPrice() != null
+                    ? existingOrder.getUnitPrice() : references.getProductPrice());
+            if (existingOrder.getUnitPrice() == null ||
+                !existingOrder.getProductId().equals(order.getProductId())) {
+                existingOrder.setUnitPrice(references.getProductPrice());
             }
             
             existingOrder.setAmount(order.getAmount());
             existingOrder.setUserId(existingOrder.getUserId());
-            existingOrder.setProductId(existingProduct.getId());
+            existingOrder.setProductId(order.getProductId());
             existingOrder.setStatus(order.getStatus());
             existingOrder.setCreatedAt(LocalDateTime.now());
             
+            // Version expected by the client (If-Match): a different one fails the update.
+            if (order.getVersion() != null) existingOrder.setVersion(order.getVersion());
+            
+            // Flushed here so a version conflict is reported as such and not at commit.
             OrderEntity orderEntity = orderMapper.toEntity(existingOrder);
+            OrderEntity updatedOrder = orderRepository.saveAndFlush(orderEntity);
             
-            OrderEntity updatedOrder = orderRepository.save(orderEntity);
+            userSpending.record(
+                updatedOrder.getUser().getId(),
+                updatedOrder.getAmount() * updatedOrder.getUnitPrice() - previousSpent);
             
             KafkaNotificationTO notification = KafkaNotificationTO.builder().message(
                 "Order updated successfully").orderId(updatedOrder.getId()).build();
             
-            kafkaProducer.sendNotification(notification);
+            orderOutbox.enqueue(notification);
             
             return orderMapper.toDTO(updatedOrder);
         } catch (APIRequestException ex) {
             throw ex;
+        } catch (OptimisticLockingFailureException ex) {
+            APIError.RESOURCE_CONFLICT.setTitle("Order modified");
+            APIError.RESOURCE_CONFLICT.setMessage(
+                "The order was modified by another request. Get it again and retry.");
+            throw new APIRequestException(APIError.RESOURCE_CONFLICT);
         } catch (DataAccessException ex) {
             throw new APIRequestException(APIError.DATABASE_ERROR);
         } catch (Exception ex) {
@@ -167,30 +419,37 @@ public class OrderService implements OrderServiceUseCase {
     }
     
     @Override
+    @Transactional
     public String cancelOrder(UUID id) {
         try {
-            OrderTO existingOrder = this.findOrderById(id);
-            ProductTO existingProduct = productService.findProductById(existingOrder.getProductId());
-            
-            existingOrder.setStatus(OrderStatus.CANCELLED);
-            int affectedRecords = orderRepository.cancelOrder(
-                existingOrder.getId(),
-                existingOrder.getStatus()
+            // Cancel and restock in one statement; the order comes back as it was before.
+            Optional<OrderRepository.CancelledOrder> cancelled = orderRepository.cancelOrder(
+                id,
+                inventoryLedger == null
             );
             
-            if (affectedRecords == 0) {
+            if (cancelled.isEmpty()) {
+                // Only on failure: tells a missing order from one already cancelled.
+                this.findOrderById(id);
+                
                 APIError.RESOURCE_CONFLICT.setTitle("Error canceling order");
-                APIError.RESOURCE_CONFLICT.setMessage("An error occurred while canceling the order.");
+                APIError.RESOURCE_CONFLICT.setMessage("The order is already cancelled.");
                 
                 throw new APIRequestException(APIError.RESOURCE_CONFLICT);
             }
             
-            productService.updateProductStock(existingProduct.getId(), existingOrder.getAmount());
+            OrderRepository.CancelledOrder order = cancelled.get();
+            if (inventoryLedger != null) {
+                inventoryLedger.adjust(order.productId(), order.amount());
+            } else {
+                productCache.evict(order.productId());
+            }
+            userSpending.record(order.userId(), -order.amount() * order.unitPrice());
             
             KafkaNotificationTO notification = KafkaNotificationTO.builder().message(
-                "Order deleted successfully").orderId(existingOrder.getId()).build();
+                "Order deleted successfully").orderId(order.id()).build();
             
-            kafkaProducer.sendNotification(notification);
+            orderOutbox.enqueue(notification);
             
             return "The order was successfully cancelled.";
         } catch (APIRequestException ex) {
@@ -201,4 +460,45 @@ public class OrderService implements OrderServiceUseCase {
             throw new APIRequestException(APIError.INTERNAL_SERVER_ERROR);
         }
     }
+    
+    /**
+     * Checks that the user and the product of an order exist, with a single query.
+     * @return The references, with the current price of the product.
+     * @throws APIRequestException RECORD_NOT_FOUND if either of them does not exist.
+     */
+    private OrderRepository.OrderReferences requireReferences(UUID userId, UUID productId) {
+        OrderRepository.OrderReferences references = orderRepository.findReferences(userId, productId);
+        
+        if (!references.getUserExists()) {
+            APIError.RECORD_NOT_FOUND.setTitle("User not found");
+            APIError.RECORD_NOT_FOUND.setMessage("The user you are trying to access does not exist.");
+            throw new APIRequestException(APIError.RECORD_NOT_FOUND);
+        }
+        if (!references.getProductExists()) {
+            APIError.RECORD_NOT_FOUND.setTitle("Product not found");
+            APIError.RECORD_NOT_FOUND.setMessage(
+                "The product you are trying to access does not exist.");
+            throw new APIRequestException(APIError.RECORD_NOT_FOUND);
+        }
+        
+        return references;
+    }
+    
+    private OrderBatchResultTO failedResult(
+        int index,
+        APIError error,
+        String title,
+        String message,
+        Map<String, String> reasons
+    )
+    {
+        return OrderBatchResultTO.builder()
+                                 .index(index)
+                                 .success(false)
+                                 .error(error)
+                                 .title(title)
+                                 .message(message)
+                                 .reasons(reasons)
+                                 .build();
+    }
 }
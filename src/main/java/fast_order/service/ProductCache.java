@@ -0,0 +1,153 @@
+package fast_order.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import fast_order.dto.ProductTO;
+import fast_order.utils.SingleFlight;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+
+/**
+ * In-process cache of products read by ID, as stored in {@code PRODUCTS}.
+ * -
+ * Bounded by {@code product.cache.max-size} with Caffeine's W-TinyLFU eviction, so products read
+ * often stay cached while one-off reads do not push them out. Entries expire after
+ * {@code product.cache.ttl}, which bounds how stale another instance's changes can be.
+ * -
+ * Every write to a product evicts it right away and again once its transaction ends, so a row
+ * read in between is not kept. Each eviction also bumps the generation of the product, and a
+ * load only stores its result if the generation did not change while it ran: a read that started
+ * before the write committed never caches the old row after the eviction. Hits, misses and
+ * evictions are published under the {@code cache.*} meters with {@code cache=products}.
+ * -
+ * Concurrent misses for the same product share one database read ({@link SingleFlight}), so an
+ * entry expiring under heavy traffic does not send every waiting request to the database.
+ * *
+ * With {@code product.cache.enabled=false} every read goes to the database, still coalesced.
+ */
+@Component
+public class ProductCache {
+    private static final int GENERATION_STRIPES = 1024;
+    
+    private final Cache<UUID, ProductTO> products;
+    /*
+     * Striped by product ID to stay bounded: products sharing a stripe only skip caching a load
+     * that raced with an eviction of the other one.
+     */
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+    private final SingleFlight<UUID, Optional<ProductTO>> loads;
+    private final boolean enabled;
+    
+    public ProductCache(
+        MeterRegistry meterRegistry,
+        @Value("${product.cache.enabled}") Boolean enabled,
+        @Value("${product.cache.max-size}") Long maxSize,
+        @Value("${product.cache.ttl}") Duration ttl,
+        @Value("${product.lookup.max-wait}") Duration lookupMaxWait
+    )
+    {
+        this.enabled = enabled;
+        this.loads = new SingleFlight<>("products", lookupMaxWait, meterRegistry);
+        this.products = Caffeine.newBuilder()
+                                .maximumSize(maxSize)
+                                .expireAfterWrite(ttl)
+                                .recordStats()
+                                .build();
+        
+        if (enabled) CaffeineCacheMetrics.monitor(meterRegistry, products, "products");
+    }
+    
+    /**
+     * Cached product, or the one returned by the loader (cached if present).
+     * The caller must not modify the returned product.
+     * @param id Product ID.
+     * @param loader Reads the product from the database.
+     */
+    public Optional<ProductTO> get(UUID id, Function<UUID, Optional<ProductTO>> loader) {
+        if (!enabled) return loads.load(id, () -> loader.apply(id));
+        
+        ProductTO cached = products.getIfPresent(id);
+        if (cached != null) return Optional.of(cached);
+        
+        long generation = generations.get(stripe(id));
+        Optional<ProductTO> loaded = loads.load(id, () -> loader.apply(id));
+        
+        // Atomic with invalidate(id): an eviction either sees the entry or has bumped the stripe.
+        loaded.ifPresent((product) -> products.asMap().compute(id, (key, current) ->
+            generations.get(stripe(id)) == generation ? product : current));
+        return loaded;
+    }
+    
+    /**
+     * Evicts the product now and, inside a transaction, again when it ends.
+     * @param id Product ID.
+     */
+    public void evict(UUID id) {
+        loads.forget(id);
+        if (!enabled) return;
+        
+        this.invalidate(id);
+        
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    invalidate(id);
+                }
+            });
+        }
+    }
+    
+    /**
+     * Same as {@link #evict(UUID)} for several products, with a single end-of-transaction eviction.
+     * @param ids Product IDs.
+     */
+    public void evict(Collection<UUID> ids) {
+        ids.forEach(loads::forget);
+        if (!enabled) return;
+        
+        ids.forEach(this::invalidate);
+        
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    ids.forEach(ProductCache.this::invalidate);
+                }
+            });
+        }
+    }
+    
+    /**
+     * Evicts every product, e.g. after they were written in bulk without going through the cache.
+     */
+    public void evictAll() {
+        for (int i = 0; i < GENERATION_STRIPES; i++) generations.incrementAndGet(i);
+        products.invalidateAll();
+    }
+    
+    /*
+     * Order matters: callers reading the new generation must start a new load rather than join
+     * the running one, and a load finishing before the removal must see the new generation.
+     */
+    private void invalidate(UUID id) {
+        loads.forget(id);
+        generations.incrementAndGet(stripe(id));
+        products.invalidate(id);
+    }
+    
+    private static int stripe(UUID id) {
+        return id.hashCode() & (GENERATION_STRIPES - 1);
+    }
+}
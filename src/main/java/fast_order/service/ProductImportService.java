@@ -0,0 +1,456 @@
+package fast_order.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fast_order.commons.enums.APIError;
+import fast_order.dto.ProductImportErrorTO;
+import fast_order.dto.ProductImportResultTO;
+import fast_order.dto.ProductTO;
+import fast_order.exception.APIRequestException;
+import fast_order.service.inventory.InventoryLedger;
+import fast_order.service.inventory.StockShardService;
+import fast_order.service.search.ProductSuggestIndex;
+import fast_order.utils.CsvReader;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Bulk import of products for {@code POST /products/import}.
+ * -
+ * The body is read as a stream, CSV ({@code text/csv}, with a header naming the {@code name},
+ * {@code price}, {@code stock} and {@code description} columns in any order) or NDJSON
+ * ({@code application/x-ndjson}, one product per line), so its size is not bounded by memory.
+ * -
+ * Each row is validated with the {@link ProductTO} constraints and upserted by name in JDBC
+ * batches of {@code product.import.batch-size} rows, one transaction per batch:
+ * - A new name inserts the product.
+ * - An existing name updates its price, description and stock. Products whose stock is split get
+ * the new stock spread again across their shards through {@link StockShardService#split}.
+ * - With {@code inventory.ledger.enabled} the ledger owns the stock: existing products keep the
+ * persisted stock and the imported one is applied through {@link InventoryLedger#adjustTo}, as in
+ * a single product update.
+ * -
+ * Rows that fail validation or the database are reported by number and the import goes on. A batch
+ * rejected by the database is retried row by row so only the bad rows fail.
+ * *
+ * Batches are committed as they are written: an import interrupted halfway keeps the rows written
+ * so far, and running it again updates them instead of duplicating them.
+ */
+@Service
+public class ProductImportService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProductImportService.class);
+    
+    public static final String TEXT_CSV = "text/csv";
+    public static final String APPLICATION_NDJSON = "application/x-ndjson";
+    
+    private static final Set<String> CSV_COLUMNS = Set.of("name", "price", "stock", "description");
+    private static final String UPSERT_QUERY =
+        "INSERT INTO fast_order_schema.PRODUCTS " +
+            "(product_id, name, price, stock, description, stock_shards, version) " +
+            "VALUES (?, ?, ?, ?, ?, 1, 0) " +
+            "ON CONFLICT (name) DO UPDATE SET " +
+            "price = EXCLUDED.price, " +
+            "description = EXCLUDED.description, " +
+            "stock = CASE WHEN PRODUCTS.stock_shards = 1 " +
+            "THEN EXCLUDED.stock ELSE PRODUCTS.stock END, " +
+            "version = PRODUCTS.version + 1";
+    private static final String UPSERT_KEEPING_STOCK_QUERY =
+        "INSERT INTO fast_order_schema.PRODUCTS " +
+            "(product_id, name, price, stock, description, stock_shards, version) " +
+            "VALUES (?, ?, ?, ?, ?, 1, 0) " +
+            "ON CONFLICT (name) DO UPDATE SET " +
+            "price = EXCLUDED.price, " +
+            "description = EXCLUDED.description, " +
+            "version = PRODUCTS.version + 1";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final ProductCache productCache;
+    private final ProductSuggestIndex productSuggestIndex;
+    private final StockShardService stockShardService;
+    private final InventoryLedger inventoryLedger;
+    
+    @Value("${product.import.batch-size}")
+    private Integer batchSize;
+    
+    @Value("${product.import.max-errors}")
+    private Integer maxErrors;
+    
+    public ProductImportService(
+        JdbcTemplate jdbcTemplate,
+        PlatformTransactionManager transactionManager,
+        ObjectMapper objectMapper,
+        Validator validator,
+        ProductCache productCache,
+        ProductSuggestIndex productSuggestIndex,
+        StockShardService stockShardService,
+        ObjectProvider<InventoryLedger> inventoryLedger
+    )
+    {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.productCache = productCache;
+        this.productSuggestIndex = productSuggestIndex;
+        this.stockShardService = stockShardService;
+        this.inventoryLedger = inventoryLedger.getIfAvailable();
+    }
+    
+    /**
+     * Imports the products of the stream.
+     * @param body Request body, read until its end.
+     * @param contentType {@value #TEXT_CSV} or {@value #APPLICATION_NDJSON}, optionally with a
+     * charset (UTF-8 by default).
+     * @return Rows read, imported and rejected.
+     */
+    public ProductImportResultTO importProducts(InputStream body, String contentType) {
+        MediaType mediaType = this.parseMediaType(contentType);
+        Charset charset = mediaType.getCharset() != null
+            ? mediaType.getCharset()
+            : StandardCharsets.UTF_8;
+        Import progress = new Import();
+        
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, charset))) {
+            if (mediaType.isCompatibleWith(MediaType.parseMediaType(TEXT_CSV))) {
+                this.readCsv(reader, progress);
+            } else {
+                this.readNdjson(reader, progress);
+            }
+            this.flush(progress);
+        } catch (APIRequestException ex) {
+            throw ex;
+        } catch (IOException ex) {
+            // Rows read so far are still written; the report tells where the import stopped.
+            LOGGER.warn("Product import stopped after {} rows: {}", progress.rows, ex.getMessage());
+            this.flush(progress);
+            this.reject(
+                progress,
+                progress.rows + 1,
+                null,
+                APIError.BAD_FORMAT.getTitle(),
+                ex.getMessage(),
+                null
+            );
+        } catch (DataAccessException ex) {
+            throw new APIRequestException(APIError.DATABASE_ERROR);
+        } catch (Exception ex) {
+            throw new APIRequestException(APIError.INTERNAL_SERVER_ERROR);
+        } finally {
+            if (progress.imported > 0) {
+                // Written with plain SQL: cached products and suggestions are out of date.
+                productCache.evictAll();
+                productSuggestIndex.rebuild();
+            }
+        }
+        
+        return ProductImportResultTO.builder()
+                                    .rows(progress.rows)
+                                    .imported(progress.imported)
+                                    .failed(progress.failed)
+                                    .errorsTruncated(progress.failed > progress.errors.size())
+                                    .errors(progress.errors)
+                                    .build();
+    }
+    
+    private void readCsv(BufferedReader reader, Import progress) throws IOException {
+        CsvReader csv = new CsvReader(reader);
+        List<String> header = csv.readRecord();
+        Map<String, Integer> columns = new HashMap<>();
+        
+        if (header != null) {
+            for (int i = 0; i < header.size(); i++) {
+                columns.put(header.get(i).strip().toLowerCase(Locale.ROOT), i);
+            }
+        }
+        if (!columns.keySet().containsAll(CSV_COLUMNS)) {
+            APIError.BAD_REQUEST.setTitle("Invalid CSV header");
+            APIError.BAD_REQUEST.setMessage(
+                "The first line must name the columns: name, price, stock and description.");
+            throw new APIRequestException(APIError.BAD_REQUEST);
+        }
+        
+        List<String> record;
+        while ((record = csv.readRecord()) != null) {
+            long row = ++progress.rows;
+            Map<String, String> reasons = new HashMap<>();
+            
+            ProductTO product = ProductTO.builder()
+                                         .name(this.field(record, columns, "name"))
+                                         .description(this.field(record, columns, "description"))
+                                         .price(this.parse(
+                                             record, columns, "price", reasons, Double::valueOf))
+                                         .stock(this.parse(
+                                             record, columns, "stock", reasons, Integer::valueOf))
+                                         .build();
+            
+            if (!reasons.isEmpty()) {
+                this.reject(
+                    progress,
+                    row,
+                    product.getName(),
+                    APIError.INVALID_REQUEST_DATA.getTitle(),
+                    APIError.INVALID_REQUEST_DATA.getMessage(),
+                    reasons
+                );
+            } else {
+                this.accept(progress, row, product);
+            }
+        }
+    }
+    
+    private void readNdjson(BufferedReader reader, Import progress) throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) continue;
+            long row = ++progress.rows;
+            
+            try {
+                this.accept(progress, row, objectMapper.readValue(line, ProductTO.class));
+            } catch (JsonProcessingException ex) {
+                this.reject(
+                    progress,
+                    row,
+                    null,
+                    APIError.BAD_FORMAT.getTitle(),
+                    ex.getOriginalMessage(),
+                    null
+                );
+            }
+        }
+    }
+    
+    private void accept(Import progress, long row, ProductTO product) {
+        Set<ConstraintViolation<ProductTO>> violations =
+            product == null ? Set.of() : validator.validate(product);
+        
+        if (product == null || !violations.isEmpty()) {
+            Map<String, String> reasons = new HashMap<>();
+            violations.forEach((violation) -> reasons.put(
+                violation.getPropertyPath().toString(),
+                violation.getMessage()
+            ));
+            this.reject(
+                progress,
+                row,
+                product != null ? product.getName() : null,
+                APIError.INVALID_REQUEST_DATA.getTitle(),
+                APIError.INVALID_REQUEST_DATA.getMessage(),
+                reasons
+            );
+            return;
+        }
+        
+        // Two rows with the same name cannot share a statement: the first one is written first.
+        if (progress.batch.containsKey(product.getName())) this.flush(progress);
+        
+        progress.batch.put(product.getName(), new Row(row, product));
+        if (progress.batch.size() >= batchSize) this.flush(progress);
+    }
+    
+    private void flush(Import progress) {
+        if (progress.batch.isEmpty()) return;
+        List<Row> rows = new ArrayList<>(progress.batch.values());
+        progress.batch.clear();
+        
+        try {
+            transactionTemplate.executeWithoutResult((status) -> this.upsert(rows));
+            progress.imported += rows.size();
+        } catch (DataAccessException ex) {
+            LOGGER.warn("Product import batch of {} rows failed, importing them one by one",
+                        rows.size());
+            
+            for (Row row : rows) {
+                try {
+                    transactionTemplate.executeWithoutResult((status) -> this.upsert(List.of(row)));
+                    progress.imported++;
+                } catch (DataIntegrityViolationException rowEx) {
+                    this.reject(
+                        progress,
+                        row.number(),
+                        row.product().getName(),
+                        APIError.UNIQUE_CONSTRAINT_VIOLATION.getTitle(),
+                        APIError.UNIQUE_CONSTRAINT_VIOLATION.getMessage(),
+                        null
+                    );
+                } catch (DataAccessException rowEx) {
+                    this.reject(
+                        progress,
+                        row.number(),
+                        row.product().getName(),
+                        APIError.DATABASE_ERROR.getTitle(),
+                        APIError.DATABASE_ERROR.getMessage(),
+                        null
+                    );
+                }
+            }
+        }
+    }
+    
+    private void upsert(List<Row> rows) {
+        Map<String, Existing> existing = this.findExisting(rows);
+        
+        if (inventoryLedger == null) {
+            this.write(UPSERT_QUERY, rows);
+            
+            // The upsert leaves split stock alone: the new total is spread again across the shards.
+            for (Row row : rows) {
+                Existing product = existing.get(row.product().getName());
+                if (product != null && product.stockShards() > 1) {
+                    stockShardService.split(
+                        product.id(), product.stockShards(), row.product().getStock());
+                }
+            }
+            return;
+        }
+        
+        // Counters are loaded from PRODUCTS: only products that already exist need a delta.
+        this.write(UPSERT_KEEPING_STOCK_QUERY, rows);
+        
+        for (Row row : rows) {
+            Existing product = existing.get(row.product().getName());
+            if (product != null) inventoryLedger.adjustTo(product.id(), row.product().getStock());
+        }
+    }
+    
+    private Map<String, Existing> findExisting(List<Row> rows) {
+        String placeholders = String.join(", ", Collections.nCopies(rows.size(), "?"));
+        Map<String, Existing> products = new HashMap<>();
+        
+        jdbcTemplate.query(
+            "SELECT product_id, name, stock_shards FROM fast_order_schema.PRODUCTS " +
+                "WHERE name IN (" + placeholders + ")",
+            (result) -> {
+                products.put(result.getString("name"), new Existing(
+                    result.getObject("product_id", UUID.class),
+                    result.getInt("stock_shards")
+                ));
+            },
+            rows.stream().map((row) -> row.product().getName()).toArray()
+        );
+        return products;
+    }
+    
+    private void write(String query, List<Row> rows) {
+        jdbcTemplate.batchUpdate(query, rows, rows.size(), (statement, row) -> {
+            ProductTO product = row.product();
+            statement.setObject(1, UUID.randomUUID());
+            statement.setString(2, product.getName());
+            statement.setDouble(3, product.getPrice());
+            statement.setInt(4, product.getStock());
+            statement.setString(5, product.getDescription());
+        });
+    }
+    
+    private void reject(
+        Import progress,
+        long row,
+        String name,
+        String title,
+        String message,
+        Map<String, String> reasons
+    )
+    {
+        progress.failed++;
+        if (progress.errors.size() >= maxErrors) return;
+        
+        progress.errors.add(ProductImportErrorTO.builder()
+                                                .row(row)
+                                                .name(name)
+                                                .title(title)
+                                                .message(message)
+                                                .reasons(reasons)
+                                                .build());
+    }
+    
+    private String field(List<String> record, Map<String, Integer> columns, String column) {
+        int index = columns.get(column);
+        if (index >= record.size()) return null;
+        
+        String value = record.get(index).strip();
+        return value.isEmpty() ? null : value;
+    }
+    
+    private <T> T parse(
+        List<String> record,
+        Map<String, Integer> columns,
+        String column,
+        Map<String, String> reasons,
+        Function<String, T> parser
+    )
+    {
+        String value = this.field(record, columns, column);
+        if (value == null) return null;
+        
+        try {
+            return parser.apply(value);
+        } catch (NumberFormatException ex) {
+            reasons.put(column, "Must be a number.");
+            return null;
+        }
+    }
+    
+    private MediaType parseMediaType(String contentType) {
+        try {
+            MediaType mediaType = MediaType.parseMediaType(contentType);
+            if (mediaType.isCompatibleWith(MediaType.parseMediaType(TEXT_CSV)) ||
+                mediaType.isCompatibleWith(MediaType.parseMediaType(APPLICATION_NDJSON))) {
+                return mediaType;
+            }
+        } catch (Exception ex) {
+            // Reported below as unsupported.
+        }
+        
+        APIError.BAD_REQUEST.setTitle("Unsupported format");
+        APIError.BAD_REQUEST.setMessage(
+            "Products can be imported as %s or %s.".formatted(TEXT_CSV, APPLICATION_NDJSON));
+        throw new APIRequestException(APIError.BAD_REQUEST);
+    }
+    
+    private record Row(long number, ProductTO product) {
+    }
+    
+    private record Existing(UUID id, int stockShards) {
+    }
+    
+    /*
+     * State of one import: counters, the rows waiting for the next batch and the errors to report.
+     */
+    private static final class Import {
+        private final Map<String, Row> batch = new LinkedHashMap<>();
+        private final List<ProductImportErrorTO> errors = new ArrayList<>();
+        private long rows;
+        private long imported;
+        private long failed;
+    }
+}
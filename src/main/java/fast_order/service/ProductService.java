@@ -1,44 +1,150 @@
 package fast_order.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import fast_order.commons.enums.APIError;
 import fast_order.dto.PriceUpdateTO;
+import fast_order.dto.ProductSuggestionTO;
 import fast_order.dto.ProductTO;
+import fast_order.dto.SlicePageTO;
+import fast_order.dto.StockUpdateTO;
 import fast_order.entity.ProductEntity;
 import fast_order.exception.APIRequestException;
 import fast_order.mapper.ProductMapper;
 import fast_order.repository.ProductRepository;
+import fast_order.service.inventory.InventoryLedger;
+import fast_order.service.inventory.StockShardService;
+import fast_order.service.search.ProductSuggestIndex;
 import fast_order.service.use_case.ProductServiceUseCase;
 import fast_order.utils.ProductSpecification;
 import jakarta.validation.ConstraintViolationException;
 import jakarta.validation.Valid;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Service
 public class ProductService implements ProductServiceUseCase {
+    private static final String SEARCH_PARAMETER = "q";
+    private static final Set<String> PAGING_PARAMETERS = Set.of("page", "size", "sort");
+    
     private final ProductRepository productRepository;
     private final ProductMapper productMapper;
+    private final StockShardService stockShardService;
+    private final ProductCache productCache;
+    private final ProductSuggestIndex productSuggestIndex;
+    private final InventoryLedger inventoryLedger;
+    
+    private final Cache<String, Long> approximateCounts;
+    
+    @Value("${product.search.full-text}")
+    private Boolean fullTextSearch;
+    
+    @Value("${product.listing.approximate-count.enabled}")
+    private Boolean approximateCountEnabled;
+    
+    @Value("${product.bulk-update.max-size}")
+    private Integer bulkUpdateMaxSize;
     
-    public ProductService(ProductRepository productRepository, ProductMapper productMapper) {
+    @Value("${product.bulk-update.chunk-size}")
+    private Integer bulkUpdateChunkSize;
+    
+    public ProductService(
+        ProductRepository productRepository,
+        ProductMapper productMapper,
+        StockShardService stockShardService,
+        ProductCache productCache,
+        ProductSuggestIndex productSuggestIndex,
+        ObjectProvider<InventoryLedger> inventoryLedger,
+        @Value("${product.listing.approximate-count.ttl}") Duration approximateCountTtl
+    )
+    {
         this.productRepository = productRepository;
         this.productMapper = productMapper;
+        this.stockShardService = stockShardService;
+        this.productCache = productCache;
+        this.productSuggestIndex = productSuggestIndex;
+        // Only present when inventory.ledger.enabled=true; otherwise stock lives in PRODUCTS only.
+        this.inventoryLedger = inventoryLedger.getIfAvailable();
+        // Estimated total of the unfiltered count-free listing: read again at most once per TTL.
+        this.approximateCounts = Caffeine.newBuilder()
+                                         .maximumSize(1_000)
+                                         .expireAfterWrite(approximateCountTtl)
+                                         .build();
     }
     
     @Override
     public Page<ProductTO> findAllProducts(Pageable pageable, Map<String, String> keywords) {
         try {
-            Specification<ProductEntity> spec = ProductSpecification.filterProducts(keywords);
-            Page<ProductEntity> result = productRepository.findAll(spec, pageable);
+            String text = keywords.remove(SEARCH_PARAMETER);
+            Page<ProductEntity> result;
+            
+            if (this.isFullTextSearch(text, keywords)) {
+                // Ranked by relevance: the requested sort does not apply.
+                result = productRepository.searchProducts(
+                    text.trim(),
+                    PageRequest.of(pageable.getPageNumber(), pageable.getPageSize())
+                );
+            } else {
+                result = productRepository.findAll(this.listingFilter(text, keywords), pageable);
+            }
+            
+            return result.map(productMapper::toDTO).map(this::withCurrentStock);
+        } catch (APIRequestException ex) {
+            throw ex;
+        } catch (DataAccessException ex) {
+            throw new APIRequestException(APIError.DATABASE_ERROR);
+        } catch (Exception ex) {
+            throw new APIRequestException(APIError.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
+    @Override
+    public SlicePageTO<ProductTO> findProductSlice(Pageable pageable, Map<String, String> keywords) {
+        try {
+            String text = keywords.remove(SEARCH_PARAMETER);
+            String countKey = this.countKey(text, keywords);
+            Slice<ProductEntity> result;
+            
+            if (this.isFullTextSearch(text, keywords)) {
+                result = productRepository.searchProductsSlice(
+                    text.trim(),
+                    PageRequest.of(pageable.getPageNumber(), pageable.getPageSize())
+                );
+            } else {
+                result = productRepository.findSlice(this.listingFilter(text, keywords), pageable);
+            }
+            
+            // Only the unfiltered listing has a total: filtered ones could not get it without
+            // counting, which is what count=false avoids.
+            Long approximateTotal = approximateCountEnabled && countKey.isEmpty()
+                ? approximateCounts.get(countKey, (key) -> productRepository.estimateCount())
+                : null;
             
-            return result.map(productMapper::toDTO);
+            return new SlicePageTO<>(
+                result.map(productMapper::toDTO).map(this::withCurrentStock),
+                approximateTotal
+            );
         } catch (APIRequestException ex) {
             throw ex;
         } catch (DataAccessException ex) {
@@ -48,10 +154,22 @@ public class ProductService implements ProductServiceUseCase {
         }
     }
     
+    @Override
+    public List<ProductSuggestionTO> suggestProducts(String text, Integer limit) {
+        if (limit == null || limit < 1) {
+            APIError.BAD_REQUEST.setTitle("Invalid limit");
+            APIError.BAD_REQUEST.setMessage("The limit must be greater than zero.");
+            throw new APIRequestException(APIError.BAD_REQUEST);
+        }
+        
+        return productSuggestIndex.suggest(text, limit);
+    }
+    
     @Override
     public ProductTO findProductById(UUID id) {
         try {
-            Optional<ProductEntity> existingProduct = productRepository.findById(id);
+            Optional<ProductTO> existingProduct = productCache.get(
+                id, (key) -> productRepository.findById(key).map(productMapper::toDTO));
             
             if (existingProduct.isEmpty()) {
                 APIError.RECORD_NOT_FOUND.setTitle("Product not found");
@@ -61,7 +179,8 @@ public class ProductService implements ProductServiceUseCase {
                 throw new APIRequestException(APIError.RECORD_NOT_FOUND);
             }
             
-            return productMapper.toDTO(existingProduct.get());
+            // The cached product is shared: the stock overlay is applied to a copy.
+            return this.withCurrentStock(productMapper.copy(existingProduct.get()));
         } catch (APIRequestException ex) {
             throw ex;
         } catch (DataAccessException ex) {
@@ -71,6 +190,24 @@ public class ProductService implements ProductServiceUseCase {
         }
     }
     
+    @Override
+    public Map<UUID, Double> findProductPrices(Collection<UUID> ids) {
+        try {
+            if (ids.isEmpty()) return Map.of();
+            
+            return productRepository.findPrices(ids)
+                                    .stream()
+                                    .collect(Collectors.toMap(
+                                        ProductRepository.ProductPrice::getId,
+                                        ProductRepository.ProductPrice::getPrice
+                                    ));
+        } catch (DataAccessException ex) {
+            throw new APIRequestException(APIError.DATABASE_ERROR);
+        } catch (Exception ex) {
+            throw new APIRequestException(APIError.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
     @Override
     public ProductTO findProductByName(String name) {
         try {
@@ -82,7 +219,7 @@ public class ProductService implements ProductServiceUseCase {
                 throw new APIRequestException(APIError.RECORD_NOT_FOUND);
             }
             
-            return productMapper.toDTO(existingProduct.get());
+            return this.withCurrentStock(productMapper.toDTO(existingProduct.get()));
         } catch (APIRequestException ex) {
             throw ex;
         } catch (DataAccessException ex) {
@@ -97,6 +234,7 @@ public class ProductService implements ProductServiceUseCase {
         try {
             ProductEntity productEntity = productMapper.toEntity(product);
             ProductEntity productSaved = productRepository.save(productEntity);
+            productSuggestIndex.put(productSaved.getId(), productSaved.getName());
             return productMapper.toDTO(productSaved);
         } catch (APIRequestException ex) {
             throw ex;
@@ -115,21 +253,48 @@ public class ProductService implements ProductServiceUseCase {
     }
     
     @Override
+    @Transactional
     public ProductTO updateProduct(UUID id, ProductTO product) {
         try {
+            // Evicted first so the version and stock are read from the database.
+            productCache.evict(id);
             ProductTO existingProduct = this.findProductById(id);
             
             existingProduct.setName(product.getName());
             existingProduct.setDescription(product.getDescription());
             existingProduct.setPrice(product.getPrice());
-            existingProduct.setStock(product.getStock());
             
+            // Version expected by the client (If-Match): a different one fails the update.
+            if (product.getVersion() != null) existingProduct.setVersion(product.getVersion());
+            
+            if (inventoryLedger == null && existingProduct.getStockShards() > 1) {
+                // Split stock: the new total is spread again across the shards.
+                stockShardService.split(id, existingProduct.getStockShards(), product.getStock());
+                existingProduct.setStock(0);
+            } else if (inventoryLedger == null) {
+                existingProduct.setStock(product.getStock());
+            } else {
+                /*
+                 * The new stock goes through the ledger as a delta, and the persisted stock is
+                 * written back unchanged under a row lock so a concurrent flush is not lost.
+                 */
+                inventoryLedger.adjustTo(id, product.getStock());
+                productRepository.lockStock(id).ifPresent(existingProduct::setStock);
+            }
+            
+            // Flushed here so a version conflict is reported as such and not at commit.
             ProductEntity productEntity = productMapper.toEntity(existingProduct);
-            ProductEntity productUpdated = productRepository.save(productEntity);
+            ProductEntity productUpdated = productRepository.saveAndFlush(productEntity);
+            productSuggestIndex.put(productUpdated.getId(), productUpdated.getName());
             
-            return productMapper.toDTO(productUpdated);
+            return this.withCurrentStock(productMapper.toDTO(productUpdated));
         } catch (APIRequestException ex) {
             throw ex;
+        } catch (OptimisticLockingFailureException ex) {
+            APIError.RESOURCE_CONFLICT.setTitle("Product modified");
+            APIError.RESOURCE_CONFLICT.setMessage(
+                "The product was modified by another request. Get it again and retry.");
+            throw new APIRequestException(APIError.RESOURCE_CONFLICT);
         } catch (DataIntegrityViolationException ex) {
             Throwable cause = ex.getCause();
             Throwable rootCause = cause.getCause();
@@ -150,6 +315,10 @@ public class ProductService implements ProductServiceUseCase {
             ProductTO existingProduct = this.findProductById(id);
             
             productRepository.deleteById(existingProduct.getId());
+            productCache.evict(existingProduct.getId());
+            productSuggestIndex.remove(existingProduct.getId());
+            
+            if (inventoryLedger != null) inventoryLedger.evict(existingProduct.getId());
         } catch (APIRequestException ex) {
             throw ex;
         } catch (DataIntegrityViolationException ex) {
@@ -169,20 +338,19 @@ public class ProductService implements ProductServiceUseCase {
     @Override
     public ProductTO updateProductPrice(UUID id, PriceUpdateTO newPrice) {
         try {
-            ProductTO existingProduct = this.findProductById(id);
-            
-            int productUpdated = productRepository.updateProductPrice(
-                existingProduct.getId(),
-                newPrice.price()
-            );
+            // One statement: the updated row comes back with the update (RETURNING).
+            List<ProductEntity> updated = productRepository.updatePrices(
+                Map.of(id, newPrice.price()));
+            productCache.evict(id);
             
-            if (productUpdated == 0) {
-                APIError.INTERNAL_SERVER_ERROR.setTitle("Error updating");
-                APIError.INTERNAL_SERVER_ERROR.setMessage("Error updating product price.");
-                throw new APIRequestException(APIError.INTERNAL_SERVER_ERROR);
+            if (updated.isEmpty()) {
+                APIError.RECORD_NOT_FOUND.setTitle("Product not found");
+                APIError.RECORD_NOT_FOUND.setMessage(
+                    "The product you are trying to access does not exist.");
+                throw new APIRequestException(APIError.RECORD_NOT_FOUND);
             }
             
-            return this.findProductById(existingProduct.getId());
+            return this.withCurrentStock(productMapper.toDTO(updated.get(0)));
         } catch (APIRequestException ex) {
             throw ex;
         } catch (DataAccessException ex) {
@@ -193,19 +361,92 @@ public class ProductService implements ProductServiceUseCase {
     }
     
     @Override
+    @Transactional
     public ProductTO updateProductStock(UUID id, Integer amount) {
         try {
-            ProductTO existingProduct = this.findProductById(id);
+            if (inventoryLedger != null) {
+                ProductTO existingProduct = this.findProductById(id);
+                inventoryLedger.adjust(existingProduct.getId(), amount);
+                existingProduct.setStock(this.adjustedLedgerStock(existingProduct.getId(), amount));
+                return existingProduct;
+            }
+            
+            List<ProductEntity> updated = productRepository.increaseStocks(Map.of(id, amount));
+            productCache.evict(id);
+            
+            if (updated.isEmpty()) {
+                APIError.RECORD_NOT_FOUND.setTitle("Product not found");
+                APIError.RECORD_NOT_FOUND.setMessage(
+                    "The product you are trying to access does not exist.");
+                throw new APIRequestException(APIError.RECORD_NOT_FOUND);
+            }
+            
+            return this.withCurrentStock(productMapper.toDTO(updated.get(0)));
+        } catch (APIRequestException ex) {
+            throw ex;
+        } catch (DataAccessException ex) {
+            throw new APIRequestException(APIError.DATABASE_ERROR);
+        } catch (Exception ex) {
+            throw new APIRequestException(APIError.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
+    @Override
+    @Transactional
+    public List<ProductTO> updateProductPrices(Map<UUID, PriceUpdateTO> prices) {
+        try {
+            this.requireBulkSize(prices);
+            
+            // In ID order, so two bulk updates lock shared products in the same order.
+            Map<UUID, Double> newPrices = new TreeMap<>();
+            prices.forEach((id, price) -> newPrices.put(id, price.price()));
+            
+            List<ProductEntity> updated = new ArrayList<>(newPrices.size());
+            for (Map<UUID, Double> chunk : this.chunks(newPrices)) {
+                updated.addAll(productRepository.updatePrices(chunk));
+            }
+            productCache.evict(newPrices.keySet());
+            this.requireAllFound(newPrices.keySet(), updated);
+            
+            return updated.stream().map(productMapper::toDTO).map(this::withCurrentStock).toList();
+        } catch (APIRequestException ex) {
+            throw ex;
+        } catch (DataAccessException ex) {
+            throw new APIRequestException(APIError.DATABASE_ERROR);
+        } catch (Exception ex) {
+            throw new APIRequestException(APIError.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
+    @Override
+    @Transactional
+    public List<ProductTO> updateProductStocks(Map<UUID, StockUpdateTO> amounts) {
+        try {
+            this.requireBulkSize(amounts);
             
-            int updated = productRepository.increaseProductStock(existingProduct.getId(), amount);
+            Map<UUID, Integer> increases = new TreeMap<>();
+            amounts.forEach((id, amount) -> increases.put(id, amount.amount()));
             
-            if (updated == 0) {
-                APIError.INTERNAL_SERVER_ERROR.setTitle("Error updating");
-                APIError.INTERNAL_SERVER_ERROR.setMessage("Error updating product stock.");
-                throw new APIRequestException(APIError.INTERNAL_SERVER_ERROR);
+            if (inventoryLedger != null) {
+                List<ProductEntity> products = productRepository.findAllById(increases.keySet());
+                this.requireAllFound(increases.keySet(), products);
+                
+                increases.forEach(inventoryLedger::adjust);
+                return products.stream().map(productMapper::toDTO).map((product) -> {
+                    UUID id = product.getId();
+                    product.setStock(this.adjustedLedgerStock(id, increases.get(id)));
+                    return product;
+                }).toList();
             }
             
-            return this.findProductById(existingProduct.getId());
+            List<ProductEntity> updated = new ArrayList<>(increases.size());
+            for (Map<UUID, Integer> chunk : this.chunks(increases)) {
+                updated.addAll(productRepository.increaseStocks(chunk));
+            }
+            productCache.evict(increases.keySet());
+            this.requireAllFound(increases.keySet(), updated);
+            
+            return updated.stream().map(productMapper::toDTO).map(this::withCurrentStock).toList();
         } catch (APIRequestException ex) {
             throw ex;
         } catch (DataAccessException ex) {
@@ -215,19 +456,73 @@ public class ProductService implements ProductServiceUseCase {
         }
     }
     
+    @Override
+    public boolean reserveProductStock(UUID id, Integer amount) {
+        try {
+            if (inventoryLedger != null) return inventoryLedger.reserve(id, amount);
+            
+            boolean reserved = stockShardService.reserve(id, amount);
+            if (reserved) productCache.evict(id);
+            return reserved;
+        } catch (DataAccessException ex) {
+            throw new APIRequestException(APIError.DATABASE_ERROR);
+        } catch (Exception ex) {
+            throw new APIRequestException(APIError.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
     @Override
     public void decreaseProductStock(UUID id, Integer amount) {
         try {
-            ProductTO existingProduct = this.findProductById(id);
+            if (this.reserveProductStock(id, amount)) return;
             
-            int updated = productRepository.decreaseProductStock(existingProduct.getId(), amount);
+            // The guarded update touched no rows: tell a missing product apart from a short stock.
+            this.findProductById(id);
             
-            if (updated == 0) {
-                APIError.INTERNAL_SERVER_ERROR.setTitle("Error updating");
-                APIError.INTERNAL_SERVER_ERROR.setMessage(
-                    "A decrease occurred when updating the stock.");
-                throw new APIRequestException(APIError.INTERNAL_SERVER_ERROR);
+            APIError.RESOURCE_CONFLICT.setTitle("Insufficient stock");
+            APIError.RESOURCE_CONFLICT.setMessage("Insufficient stock for the requested product.");
+            throw new APIRequestException(APIError.RESOURCE_CONFLICT);
+        } catch (APIRequestException ex) {
+            throw ex;
+        } catch (DataAccessException ex) {
+            throw new APIRequestException(APIError.DATABASE_ERROR);
+        } catch (Exception ex) {
+            throw new APIRequestException(APIError.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
+    @Override
+    @Transactional
+    public ProductTO splitProductStock(UUID id, Integer shards) {
+        try {
+            if (inventoryLedger != null) {
+                APIError.RESOURCE_CONFLICT.setTitle("Stock managed by the ledger");
+                APIError.RESOURCE_CONFLICT.setMessage(
+                    "The stock cannot be split while the inventory ledger is enabled.");
+                throw new APIRequestException(APIError.RESOURCE_CONFLICT);
             }
+            
+            if (!stockShardService.split(id, shards, null)) this.findProductById(id);
+            productCache.evict(id);
+            
+            return this.findProductById(id);
+        } catch (APIRequestException ex) {
+            throw ex;
+        } catch (DataAccessException ex) {
+            throw new APIRequestException(APIError.DATABASE_ERROR);
+        } catch (Exception ex) {
+            throw new APIRequestException(APIError.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
+    @Override
+    @Transactional
+    public ProductTO rebalanceProductStock(UUID id) {
+        try {
+            if (!stockShardService.rebalance(id)) this.findProductById(id);
+            productCache.evict(id);
+            
+            return this.findProductById(id);
         } catch (APIRequestException ex) {
             throw ex;
         } catch (DataAccessException ex) {
@@ -237,7 +532,108 @@ public class ProductService implements ProductServiceUseCase {
         }
     }
     
-    public Boolean checkStock(ProductTO product, Integer amount) {
-        return product.getStock() >= amount;
+    /*
+     * Full-text search (q) is ranked by relevance and cannot be combined with the other filters.
+     */
+    private boolean isFullTextSearch(String text, Map<String, String> keywords) {
+        if (text == null || text.isBlank() || !fullTextSearch) return false;
+        
+        if (keywords.keySet().stream().anyMatch((key) -> !PAGING_PARAMETERS.contains(key))) {
+            APIError.BAD_REQUEST.setTitle("Invalid parameter");
+            APIError.BAD_REQUEST.setMessage(
+                "The search parameter 'q' cannot be combined with other filters.");
+            throw new APIRequestException(APIError.BAD_REQUEST);
+        }
+        return true;
+    }
+    
+    private Specification<ProductEntity> listingFilter(String text, Map<String, String> keywords) {
+        Specification<ProductEntity> spec = ProductSpecification.filterProducts(keywords);
+        if (text != null && !text.isBlank()) spec = spec.and(ProductSpecification.containsText(text));
+        return spec;
+    }
+    
+    /*
+     * Filters that change the total, in a stable order; empty for the unfiltered listing.
+     */
+    private String countKey(String text, Map<String, String> keywords) {
+        Map<String, String> filters = new TreeMap<>();
+        keywords.forEach((key, value) -> {
+            if (!PAGING_PARAMETERS.contains(key) && value != null && !value.isBlank()) {
+                filters.put(key, value.trim().toLowerCase());
+            }
+        });
+        if (text != null && !text.isBlank()) filters.put(SEARCH_PARAMETER, text.trim().toLowerCase());
+        
+        return filters.isEmpty() ? "" : filters.toString();
+    }
+    
+    private void requireBulkSize(Map<UUID, ?> updates) {
+        if (updates == null || updates.isEmpty() || updates.size() > bulkUpdateMaxSize) {
+            APIError.BAD_REQUEST.setTitle("Invalid batch size");
+            APIError.BAD_REQUEST.setMessage(
+                "The batch must contain between 1 and %d products.".formatted(bulkUpdateMaxSize));
+            throw new APIRequestException(APIError.BAD_REQUEST);
+        }
+    }
+    
+    /*
+     * Bulk updates are all or nothing: an unknown ID fails the request and rolls back the rest.
+     */
+    private void requireAllFound(Set<UUID> ids, List<ProductEntity> found) {
+        if (found.size() == ids.size()) return;
+        
+        Set<UUID> foundIds = found.stream().map(ProductEntity::getId).collect(Collectors.toSet());
+        String missing = ids.stream()
+                            .filter((id) -> !foundIds.contains(id))
+                            .limit(10)
+                            .map(UUID::toString)
+                            .collect(Collectors.joining(", "));
+        
+        APIError.RECORD_NOT_FOUND.setTitle("Product not found");
+        APIError.RECORD_NOT_FOUND.setMessage(
+            "%d of the products do not exist: %s".formatted(ids.size() - found.size(), missing));
+        throw new APIRequestException(APIError.RECORD_NOT_FOUND);
+    }
+    
+    /*
+     * One statement per chunk keeps each below the bind parameter limit of the driver.
+     */
+    private <T> List<Map<UUID, T>> chunks(Map<UUID, T> values) {
+        List<Map<UUID, T>> chunks = new ArrayList<>();
+        Map<UUID, T> chunk = new TreeMap<>();
+        
+        for (Map.Entry<UUID, T> value : values.entrySet()) {
+            chunk.put(value.getKey(), value.getValue());
+            if (chunk.size() == bulkUpdateChunkSize) {
+                chunks.add(chunk);
+                chunk = new TreeMap<>();
+            }
+        }
+        if (!chunk.isEmpty()) chunks.add(chunk);
+        return chunks;
+    }
+    
+    /*
+     * Stock once an adjust of the ledger commits: a removal is already applied to the counter
+     * (clamped at zero), an addition only after the commit.
+     */
+    private int adjustedLedgerStock(UUID id, int amount) {
+        int counter = inventoryLedger.currentStock(id).orElse(0);
+        return amount > 0 ? counter + amount : counter;
+    }
+    
+    /*
+     * Stock as seen by clients: the ledger counter when it holds the product, otherwise the
+     * product row plus its shards.
+     */
+    private ProductTO withCurrentStock(ProductTO product) {
+        if (inventoryLedger != null) {
+            inventoryLedger.currentStock(product.getId()).ifPresent(product::setStock);
+        } else if (product.getStockShards() != null && product.getStockShards() > 1) {
+            long shardStock = stockShardService.shardStock(product.getId());
+            product.setStock(Math.toIntExact(product.getStock() + shardStock));
+        }
+        return product;
     }
 }
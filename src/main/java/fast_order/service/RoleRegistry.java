@@ -0,0 +1,101 @@
+package fast_order.service;
+
+import fast_order.commons.enums.RoleType;
+import fast_order.dto.RoleTO;
+import fast_order.mapper.RoleMapper;
+import fast_order.repository.RoleRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory copy of {@code ROLES}, so logins and registrations resolve roles without a query.
+ * -
+ * The roles are read on first use and kept in an immutable snapshot, replaced whole when
+ * {@link RoleService#createRole(RoleTO)} commits a new role. An ID missing from the snapshot (a
+ * role created on another instance) triggers one reload before being reported as not found.
+ * -
+ * The caller must not modify the returned roles.
+ */
+@Component
+public class RoleRegistry {
+    private final RoleRepository roleRepository;
+    private final RoleMapper roleMapper;
+    
+    private volatile Snapshot snapshot;
+    
+    public RoleRegistry(RoleRepository roleRepository, RoleMapper roleMapper) {
+        this.roleRepository = roleRepository;
+        this.roleMapper = roleMapper;
+    }
+    
+    public List<RoleTO> findAll() {
+        return this.snapshot().roles();
+    }
+    
+    public Optional<RoleTO> findById(UUID id) {
+        RoleTO role = this.snapshot().byId().get(id);
+        if (role == null) role = this.reload().byId().get(id);
+        return Optional.ofNullable(role);
+    }
+    
+    public Optional<RoleTO> findByRoleName(RoleType roleName) {
+        RoleTO role = this.snapshot().byName().get(roleName);
+        if (role == null) role = this.reload().byName().get(roleName);
+        return Optional.ofNullable(role);
+    }
+    
+    /**
+     * Reloads the roles once the current transaction commits, or right away outside of one.
+     */
+    public void reloadAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            this.reload();
+            return;
+        }
+        
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                reload();
+            }
+        });
+    }
+    
+    private Snapshot snapshot() {
+        Snapshot current = snapshot;
+        return current != null ? current : this.reload();
+    }
+    
+    private synchronized Snapshot reload() {
+        List<RoleTO> roles = roleMapper.toDTOList(roleRepository.findAll());
+        
+        Map<UUID, RoleTO> byId = roles.stream()
+                                      .collect(Collectors.toUnmodifiableMap(
+                                          RoleTO::getId,
+                                          Function.identity()
+                                      ));
+        Map<RoleType, RoleTO> byName = new EnumMap<>(RoleType.class);
+        roles.forEach((role) -> byName.put(role.getRoleName(), role));
+        
+        snapshot = new Snapshot(List.copyOf(roles), byId, Collections.unmodifiableMap(byName));
+        return snapshot;
+    }
+    
+    private record Snapshot(
+        List<RoleTO> roles,
+        Map<UUID, RoleTO> byId,
+        Map<RoleType, RoleTO> byName
+    )
+    {
+    }
+}
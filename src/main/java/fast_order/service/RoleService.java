@@ -21,16 +21,23 @@ import java.util.UUID;
 public class RoleService implements RoleServiceUseCase {
     private final RoleRepository roleRepository;
     private final RoleMapper roleMapper;
+    private final RoleRegistry roleRegistry;
     
-    public RoleService(RoleRepository roleRepository, RoleMapper roleMapper) {
+    public RoleService(
+        RoleRepository roleRepository,
+        RoleMapper roleMapper,
+        RoleRegistry roleRegistry
+    )
+    {
         this.roleRepository = roleRepository;
         this.roleMapper = roleMapper;
+        this.roleRegistry = roleRegistry;
     }
     
     @Override
     public List<RoleTO> findRoles() {
         try {
-            return roleMapper.toDTOList(roleRepository.findAll());
+            return roleRegistry.findAll();
         } catch (DataAccessException ex) {
             throw new APIRequestException(APIError.DATABASE_ERROR);
         } catch (Exception ex) {
@@ -41,7 +48,7 @@ public class RoleService implements RoleServiceUseCase {
     @Override
     public RoleTO findRoleById(UUID id) {
         try {
-            Optional<RoleEntity> response = roleRepository.findById(id);
+            Optional<RoleTO> response = roleRegistry.findById(id);
             
             if (response.isEmpty()) {
                 APIError.RECORD_NOT_FOUND.setTitle("Role not found");
@@ -50,7 +57,7 @@ public class RoleService implements RoleServiceUseCase {
                 throw new APIRequestException(APIError.RECORD_NOT_FOUND);
             }
             
-            return roleMapper.toDTO(response.get());
+            return response.get();
         } catch (APIRequestException ex) {
             throw ex;
         } catch (DataAccessException ex) {
@@ -63,7 +70,7 @@ public class RoleService implements RoleServiceUseCase {
     @Override
     public RoleTO findRoleByRoleName(RoleType roleName) {
         try {
-            Optional<RoleEntity> response = roleRepository.findRoleByRoleName(roleName);
+            Optional<RoleTO> response = roleRegistry.findByRoleName(roleName);
             
             if (response.isEmpty()) {
                 APIError.RECORD_NOT_FOUND.setTitle("Role not found");
@@ -72,7 +79,7 @@ public class RoleService implements RoleServiceUseCase {
                 throw new APIRequestException(APIError.RECORD_NOT_FOUND);
             }
             
-            return roleMapper.toDTO(response.get());
+            return response.get();
         } catch (APIRequestException ex) {
             throw ex;
         } catch (DataAccessException ex) {
@@ -85,15 +92,14 @@ public class RoleService implements RoleServiceUseCase {
     @Override
     public RoleTO createRole(RoleTO role) {
         try {
-            Optional<RoleEntity>
-                existingRole =
-                roleRepository.findRoleByRoleName(role.getRoleName());
+            Optional<RoleTO> existingRole = roleRegistry.findByRoleName(role.getRoleName());
             
             if (existingRole.isEmpty()) {
                 RoleEntity roleEntity = roleRepository.save(roleMapper.toEntity(role));
+                roleRegistry.reloadAfterCommit();
                 return roleMapper.toDTO(roleEntity);
             } else {
-                return roleMapper.toDTO(existingRole.get());
+                return existingRole.get();
             }
         } catch (APIRequestException ex) {
             throw ex;
@@ -104,7 +110,7 @@ public class RoleService implements RoleServiceUseCase {
                 rootCause instanceof ConstraintViolationException) throw new APIRequestException(
                 APIError.UNIQUE_CONSTRAINT_VIOLATION);
             else throw new APIRequestException(APIError.RESOURCE_ASSOCIATED_EXCEPTION);
-            
+        
         } catch (DataAccessException ex) {
             throw new APIRequestException(APIError.DATABASE_ERROR);
         } catch (Exception ex) {
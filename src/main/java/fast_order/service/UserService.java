@@ -1,6 +1,7 @@
 package fast_order.service;
 
 import fast_order.commons.enums.APIError;
+import fast_order.commons.security.TokenRevocationService;
 import fast_order.dto.RoleTO;
 import fast_order.dto.UserTO;
 import fast_order.entity.UserEntity;
@@ -9,14 +10,22 @@ import fast_order.mapper.RoleMapper;
 import fast_order.mapper.UserMapper;
 import fast_order.repository.UserRepository;
 import fast_order.service.use_case.UserServiceUseCase;
+import fast_order.utils.SingleFlight;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.validation.ConstraintViolationException;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
+import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 @Service
@@ -26,13 +35,18 @@ public class UserService implements UserServiceUseCase {
     private final RoleService roleService;
     private final RoleMapper roleMapper;
     private final PasswordEncoder passwordEncoder;
+    private final TokenRevocationService tokenRevocation;
+    private final SingleFlight<UUID, Optional<UserTO>> userLoads;
     
     public UserService(
         UserRepository userRepository,
         UserMapper userMapper,
         RoleService roleService,
         RoleMapper roleMapper,
-        PasswordEncoder passwordEncoder
+        PasswordEncoder passwordEncoder,
+        TokenRevocationService tokenRevocation,
+        MeterRegistry meterRegistry,
+        @Value("${user.lookup.max-wait}") Duration lookupMaxWait
     )
     {
         this.userRepository = userRepository;
@@ -40,6 +54,8 @@ public class UserService implements UserServiceUseCase {
         this.roleService = roleService;
         this.roleMapper = roleMapper;
         this.passwordEncoder = passwordEncoder;
+        this.tokenRevocation = tokenRevocation;
+        this.userLoads = new SingleFlight<>("users", lookupMaxWait, meterRegistry);
     }
     
     @Override
@@ -56,7 +72,9 @@ public class UserService implements UserServiceUseCase {
     @Override
     public UserTO findUserById(UUID id) {
         try {
-            Optional<UserEntity> response = userRepository.findById(id);
+            // Concurrent lookups of the same user share one query; each caller gets its own copy.
+            Optional<UserTO> response = userLoads.load(
+                id, () -> userRepository.findById(id).map(userMapper::toDTO));
             
             if (response.isEmpty()) {
                 APIError.RECORD_NOT_FOUND.setTitle("User not found");
@@ -64,7 +82,7 @@ public class UserService implements UserServiceUseCase {
                 throw new APIRequestException(APIError.RECORD_NOT_FOUND);
             }
             
-            return userMapper.toDTO(response.get());
+            return userMapper.copy(response.get());
         } catch (APIRequestException ex) {
             throw ex;
         } catch (DataAccessException ex) {
@@ -74,6 +92,17 @@ public class UserService implements UserServiceUseCase {
         }
     }
     
+    @Override
+    public Set<UUID> findExistingUserIds(Collection<UUID> ids) {
+        try {
+            return ids.isEmpty() ? Set.of() : userRepository.findExistingIds(ids);
+        } catch (DataAccessException ex) {
+            throw new APIRequestException(APIError.DATABASE_ERROR);
+        } catch (Exception ex) {
+            throw new APIRequestException(APIError.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
     @Override
     public UserTO findUserByEmail(String email) {
         try {
@@ -96,6 +125,17 @@ public class UserService implements UserServiceUseCase {
         }
     }
     
+    @Override
+    public Long findTokenVersion(UUID id) {
+        try {
+            return userRepository.findTokenVersion(id).orElse(0L);
+        } catch (DataAccessException ex) {
+            throw new APIRequestException(APIError.DATABASE_ERROR);
+        } catch (Exception ex) {
+            throw new APIRequestException(APIError.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
     @Override
     public UserTO createUser(UserTO user) {
         try {
@@ -111,7 +151,7 @@ public class UserService implements UserServiceUseCase {
                 APIError.BAD_REQUEST.setMessage("The email already exists. Please check your email.");
                 throw new APIRequestException(APIError.BAD_REQUEST);
             }
-
+            
             UserEntity userEntity = userMapper.toEntity(user);
             
             RoleTO role = roleService.findRoleById(user.getRoleId());
@@ -138,21 +178,44 @@ public class UserService implements UserServiceUseCase {
         }
     }
     
+    /*
+     * Transactional so that the token revocation commits or rolls back with the change.
+     */
     @Override
+    @Transactional
     public UserTO updateUser(UUID id, UserTO user) {
         try {
             UserTO existingUser = this.findUserById(id);
             
+            /*
+             * An unchanged password keeps its stored hash, so the common update (name, email)
+             * hashes once, as before: only a new password is hashed again.
+             */
+            String storedHash = userRepository.findPasswordHash(id).orElse(null);
+            boolean passwordChanged =
+                storedHash == null || !passwordEncoder.matches(user.getPassword(), storedHash);
+            
+            // Tokens carry the email and role, and must stop working when the password changes.
+            boolean credentialsChanged =
+                !Objects.equals(existingUser.getEmail(), user.getEmail()) ||
+                    !Objects.equals(existingUser.getRoleId(), user.getRoleId()) ||
+                    passwordChanged;
+            
             existingUser.setName(user.getName());
             existingUser.setEmail(user.getEmail());
-            existingUser.setPassword(passwordEncoder.encode(user.getPassword()));
+            existingUser.setPassword(
+                passwordChanged ? passwordEncoder.encode(user.getPassword()) : storedHash);
             existingUser.setSignUpDate(user.getSignUpDate());
-            existingUser.setTotalSpent(user.getTotalSpent());
             existingUser.setRoleId(user.getRoleId());
             
             UserEntity userToUpdate = userMapper.toEntity(existingUser);
+            // Flushed here so constraint violations are reported below, not at commit.
+            UserEntity userUpdated = userRepository.saveAndFlush(userToUpdate);
+            userLoads.forget(id);
+            
+            if (credentialsChanged) tokenRevocation.revokeTokens(id);
             
-            return userMapper.toDTO(userRepository.save(userToUpdate));
+            return userMapper.toDTO(userUpdated);
         } catch (APIRequestException ex) {
             throw ex;
         } catch (DataIntegrityViolationException ex) {
@@ -170,10 +233,14 @@ public class UserService implements UserServiceUseCase {
     }
     
     @Override
+    @Transactional
     public void deleteUser(UUID id) {
         try {
             UserTO existingUser = this.findUserById(id);
             userRepository.deleteById(existingUser.getId());
+            userRepository.flush();
+            userLoads.forget(existingUser.getId());
+            tokenRevocation.revokeDeletedUser(existingUser.getId());
         } catch (APIRequestException ex) {
             throw ex;
         } catch (DataIntegrityViolationException ex) {
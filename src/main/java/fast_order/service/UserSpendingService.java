@@ -0,0 +1,209 @@
+package fast_order.service;
+
+import fast_order.repository.UserRepository;
+import fast_order.repository.UserRepository.SpendingDrift;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Keeps {@code USERS.total_spent} up to date from the orders of each user.
+ * -
+ * Orders record {@code amount * unit price} (negative when cancelled) once their transaction
+ * commits; the unit price is the product price stored on the order when it was placed.
+ * The changes are added up per user in memory and written every
+ * {@code user.total-spent.flush-interval-ms} with one update per user, so a user placing many
+ * orders does not lock their row on each of them.
+ * -
+ * Changes waiting in memory are lost if the instance crashes. The nightly reconcile
+ * ({@code user.total-spent.reconcile-cron}) recomputes the totals from {@code ORDERS} on the same
+ * basis and fixes any drift.
+ * -
+ * The recompute reads a REPEATABLE READ snapshot and applies the difference with the stored
+ * totals as deltas. Orders of this instance pass a commit gate that is closed only while the
+ * pending changes are taken out and the snapshot is taken: those changes are exactly the ones of
+ * the orders the snapshot counts, so they are dropped once the deltas are written (or put back if
+ * the reconcile fails). No order is counted twice, and the aggregate runs with the gate open.
+ * *
+ * Changes of orders committed on other instances less than a flush interval before the recompute
+ * are not covered by the gate.
+ */
+@Service
+public class UserSpendingService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(UserSpendingService.class);
+    
+    private final Map<UUID, Double> pending = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final ReadWriteLock commitGate = new ReentrantReadWriteLock();
+    
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate snapshotTemplate;
+    private final Counter failureCounter;
+    
+    public UserSpendingService(
+        UserRepository userRepository,
+        PlatformTransactionManager transactionManager,
+        MeterRegistry meterRegistry
+    )
+    {
+        this.userRepository = userRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.snapshotTemplate.setReadOnly(true);
+        
+        Gauge.builder("user.total-spent.pending", pending, Map::size)
+             .description("Users with spending not written to USERS yet")
+             .register(meterRegistry);
+        this.failureCounter = Counter.builder("user.total-spent.flush.failures")
+                                     .description("Spending flushes that failed and were retried")
+                                     .register(meterRegistry);
+    }
+    
+    /**
+     * Adds to the spending of the user once the current transaction commits.
+     * @param userId User ID.
+     * @param amount Amount spent, negative to give it back.
+     */
+    public void record(UUID userId, double amount) {
+        if (amount == 0) return;
+        
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            commitGate.readLock().lock();
+            try {
+                pending.merge(userId, amount, Double::sum);
+            } finally {
+                commitGate.readLock().unlock();
+            }
+            return;
+        }
+        
+        // The gate is held from before the commit until the change is merged.
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private boolean gated;
+            
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                commitGate.readLock().lock();
+                gated = true;
+            }
+            
+            @Override
+            public void afterCommit() {
+                pending.merge(userId, amount, Double::sum);
+            }
+            
+            @Override
+            public void afterCompletion(int status) {
+                if (gated) commitGate.readLock().unlock();
+            }
+        });
+    }
+    
+    @Scheduled(fixedDelayString = "${user.total-spent.flush-interval-ms}")
+    public void flush() {
+        if (!flushLock.tryLock()) return;
+        
+        try {
+            this.flushPending();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+    
+    @Scheduled(cron = "${user.total-spent.reconcile-cron}")
+    public void reconcile() {
+        flushLock.lock();
+        Map<UUID, Double> counted = new TreeMap<>();
+        
+        try {
+            List<SpendingDrift> drifts = snapshotTemplate.execute((status) -> {
+                /*
+                 * The connection is already held here (it is set up when the transaction
+                 * begins), so order commits only wait for the drain and the snapshot.
+                 */
+                commitGate.writeLock().lock();
+                try {
+                    // Changes of every order committed so far: exactly the ones the snapshot sees.
+                    counted.putAll(this.drainPending());
+                    userRepository.takeSnapshot();
+                } finally {
+                    commitGate.writeLock().unlock();
+                }
+                
+                return userRepository.findTotalSpentDrift();
+            });
+            
+            // Applied as deltas, so changes flushed since the snapshot are kept.
+            transactionTemplate.executeWithoutResult((status) -> drifts.forEach(
+                (drift) -> userRepository.addTotalSpent(drift.getUserId(), drift.getDrift())));
+            
+            if (!drifts.isEmpty()) {
+                LOGGER.warn("Total spent of {} users was out of date and has been recomputed",
+                            drifts.size());
+            }
+        } catch (Exception ex) {
+            counted.forEach((userId, amount) -> pending.merge(userId, amount, Double::sum));
+            LOGGER.error("Total spent reconcile failed: {}", ex.getMessage());
+        } finally {
+            flushLock.unlock();
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        flushLock.lock();
+        
+        try {
+            this.flushPending();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+    
+    private void flushPending() {
+        Map<UUID, Double> batch = this.drainPending();
+        if (batch.isEmpty()) return;
+        
+        try {
+            // Users are updated in ID order so that two instances flushing never deadlock.
+            transactionTemplate.executeWithoutResult((status) -> batch.forEach(
+                userRepository::addTotalSpent));
+        } catch (Exception ex) {
+            batch.forEach((userId, amount) -> pending.merge(userId, amount, Double::sum));
+            failureCounter.increment();
+            LOGGER.warn("Total spent flush failed, it will be retried: {}", ex.getMessage());
+        }
+    }
+    
+    private Map<UUID, Double> drainPending() {
+        // Taken out one user at a time: remove is atomic with merge, so no change is lost.
+        Map<UUID, Double> batch = new TreeMap<>();
+        for (UUID userId : new ArrayList<>(pending.keySet())) {
+            Double amount = pending.remove(userId);
+            if (amount != null) batch.put(userId, amount);
+        }
+        return batch;
+    }
+}
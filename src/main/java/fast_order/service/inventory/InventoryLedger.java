@@ -0,0 +1,319 @@
+package fast_order.service.inventory;
+
+import fast_order.entity.InventoryJournalEntity;
+import fast_order.repository.InventoryJournalRepository;
+import fast_order.repository.ProductRepository;
+import fast_order.service.ProductCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory stock counters for products with heavy order traffic.
+ * -
+ * Every product has its own counter, reserved with a compare-and-set loop, so orders for a product
+ * never wait on the {@code PRODUCTS} row lock. Each change is journaled in
+ * {@code INVENTORY_JOURNAL} inside the caller's transaction, and the net delta per product is
+ * flushed to {@code PRODUCTS} every {@code inventory.ledger.flush-interval-ms} or as soon as
+ * {@code inventory.ledger.flush-batch-size} changes are waiting.
+ * -
+ * Consistency:
+ * - A decrease is applied to the counter immediately and given back if the transaction rolls back.
+ * - An increase is applied to the counter only after the transaction commits.
+ * - On startup the journal left by the previous run is flushed and the counters are loaded
+ * lazily from {@code PRODUCTS} plus any journal entry not flushed yet.
+ * *
+ * The counters are owned by this instance: enable it only when a single instance takes orders.
+ */
+@Component
+@ConditionalOnProperty(name = "inventory.ledger.enabled", havingValue = "true")
+public class InventoryLedger implements SmartLifecycle {
+    private static final Logger LOGGER = LoggerFactory.getLogger(InventoryLedger.class);
+    
+    private final Map<UUID, AtomicInteger> counters = new ConcurrentHashMap<>();
+    private final AtomicInteger unflushed = new AtomicInteger();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicBoolean running = new AtomicBoolean();
+    
+    private final InventoryJournalRepository journalRepository;
+    private final ProductRepository productRepository;
+    private final ProductCache productCache;
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolExecutor flushExecutor;
+    private final Counter failureCounter;
+    
+    @Value("${inventory.ledger.flush-batch-size}")
+    private Integer flushBatchSize;
+    
+    public InventoryLedger(
+        InventoryJournalRepository journalRepository,
+        ProductRepository productRepository,
+        ProductCache productCache,
+        PlatformTransactionManager transactionManager,
+        MeterRegistry meterRegistry
+    )
+    {
+        this.journalRepository = journalRepository;
+        this.productRepository = productRepository;
+        this.productCache = productCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        
+        // A single flush at a time; a flush requested while another is queued is redundant.
+        this.flushExecutor = new ThreadPoolExecutor(
+            1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1),
+            (runnable) -> {
+                Thread thread = new Thread(runnable, "inventory-ledger-flush");
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.DiscardPolicy()
+        );
+        
+        Gauge.builder("inventory.ledger.unflushed", unflushed, AtomicInteger::get)
+             .description("Committed stock changes not flushed to PRODUCTS yet")
+             .register(meterRegistry);
+        Gauge.builder("inventory.ledger.products", counters, Map::size)
+             .description("Products with an in-memory stock counter")
+             .register(meterRegistry);
+        this.failureCounter = Counter.builder("inventory.ledger.flush.failures")
+                                     .description("Ledger flushes that failed and will be retried")
+                                     .register(meterRegistry);
+    }
+    
+    /**
+     * Reserves stock for the product within the current transaction.
+     * @param productId Product ID.
+     * @param amount Units to reserve.
+     * @return {@code false} if the product does not exist or has not enough stock.
+     */
+    public boolean reserve(UUID productId, int amount) {
+        this.requireTransaction();
+        
+        AtomicInteger counter = this.counter(productId);
+        if (counter == null) return false;
+        
+        int available;
+        do {
+            available = counter.get();
+            if (available < amount) return false;
+        } while (!counter.compareAndSet(available, available - amount));
+        
+        this.journal(productId, -amount);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) counter.addAndGet(amount);
+                else InventoryLedger.this.committed();
+            }
+        });
+        
+        return true;
+    }
+    
+    /**
+     * Adds (or removes, if negative) stock within the current transaction. A removal never
+     * takes the counter below zero.
+     * @param productId Product ID.
+     * @param delta Units to add.
+     */
+    public void adjust(UUID productId, int delta) {
+        this.requireTransaction();
+        
+        AtomicInteger counter = this.counter(productId);
+        if (counter == null || delta == 0) return;
+        
+        if (delta > 0) {
+            this.journal(productId, delta);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    counter.addAndGet(delta);
+                    InventoryLedger.this.committed();
+                }
+            });
+            return;
+        }
+        
+        int available;
+        int removed;
+        do {
+            available = counter.get();
+            removed = Math.min(available, -delta);
+        } while (!counter.compareAndSet(available, available - removed));
+        
+        int released = removed;
+        this.journal(productId, -removed);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) counter.addAndGet(released);
+                else InventoryLedger.this.committed();
+            }
+        });
+    }
+    
+    /**
+     * Sets the stock of the product within the current transaction, as a delta over the counter.
+     * @param productId Product ID.
+     * @param stock New stock.
+     */
+    public void adjustTo(UUID productId, int stock) {
+        AtomicInteger counter = this.counter(productId);
+        if (counter != null) this.adjust(productId, stock - counter.get());
+    }
+    
+    /**
+     * Stock held by the ledger for the product, if it has a counter loaded.
+     * @param productId Product ID.
+     */
+    public OptionalInt currentStock(UUID productId) {
+        AtomicInteger counter = counters.get(productId);
+        return counter == null ? OptionalInt.empty() : OptionalInt.of(counter.get());
+    }
+    
+    /**
+     * Drops the counter of the product once the current transaction commits, e.g. after it is
+     * deleted. The next reservation loads it again from the database.
+     * @param productId Product ID.
+     */
+    public void evict(UUID productId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            counters.remove(productId);
+            return;
+        }
+        
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                counters.remove(productId);
+            }
+        });
+    }
+    
+    @Scheduled(fixedDelayString = "${inventory.ledger.flush-interval-ms}")
+    public void flush() {
+        if (!running.get() || !flushLock.tryLock()) return;
+        
+        try {
+            unflushed.set(0);
+            
+            Integer flushed;
+            do {
+                flushed = transactionTemplate.execute((status) -> this.flushBatch());
+            } while (flushed != null && flushed >= flushBatchSize);
+        } catch (Exception ex) {
+            failureCounter.increment();
+            LOGGER.warn("Inventory ledger flush failed, it will be retried: {}", ex.getMessage());
+        } finally {
+            flushLock.unlock();
+        }
+    }
+    
+    /*
+     * Startup reconcile: the journal left by the previous run is folded into PRODUCTS before the
+     * web server starts taking orders (lower phase starts first and stops last).
+     */
+    @Override
+    public void start() {
+        running.set(true);
+        counters.clear();
+        this.flush();
+        LOGGER.info("Inventory ledger started");
+    }
+    
+    @Override
+    public void stop() {
+        flushExecutor.shutdown();
+        try {
+            flushExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        
+        this.flush();
+        running.set(false);
+    }
+    
+    @Override
+    public boolean isRunning() {
+        return running.get();
+    }
+    
+    @Override
+    public int getPhase() {
+        return Integer.MIN_VALUE;
+    }
+    
+    private int flushBatch() {
+        List<InventoryJournalEntity> batch = journalRepository.findNextBatch(
+            PageRequest.of(0, flushBatchSize));
+        if (batch.isEmpty()) return 0;
+        
+        Map<UUID, Integer> deltas = new HashMap<>();
+        batch.forEach((entry) -> deltas.merge(entry.getProductId(), entry.getDelta(), Integer::sum));
+        deltas.forEach((productId, delta) -> {
+            if (delta != 0) {
+                productRepository.applyStockDelta(productId, delta);
+                productCache.evict(productId);
+            }
+        });
+        
+        journalRepository.deleteAllInBatch(batch);
+        return batch.size();
+    }
+    
+    private AtomicInteger counter(UUID productId) {
+        AtomicInteger counter = counters.get(productId);
+        if (counter != null) return counter;
+        
+        // Loaded outside the map so a slow query does not block other products.
+        Long stock = journalRepository.findLedgerStock(productId).orElse(null);
+        if (stock == null) return null;
+        
+        AtomicInteger loaded = new AtomicInteger(Math.toIntExact(stock));
+        AtomicInteger existing = counters.putIfAbsent(productId, loaded);
+        return existing != null ? existing : loaded;
+    }
+    
+    private void journal(UUID productId, int delta) {
+        journalRepository.save(InventoryJournalEntity.builder()
+                                                     .productId(productId)
+                                                     .delta(delta)
+                                                     .build());
+    }
+    
+    private void committed() {
+        if (unflushed.incrementAndGet() >= flushBatchSize) flushExecutor.execute(this::flush);
+    }
+    
+    private void requireTransaction() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Inventory ledger changes require a transaction");
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package fast_order.service.inventory;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import fast_order.entity.ProductStockShardEntity;
+import fast_order.repository.ProductRepository;
+import fast_order.repository.ProductStockShardRepository;
+import fast_order.repository.ProductStockShardRepository.ShardStock;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Stock of products split across several rows ({@code PRODUCT_STOCK_SHARDS}).
+ * -
+ * The stock of a product is {@code PRODUCTS.stock} plus the stock of its shards. A reservation
+ * tries, in this order:
+ * - A random shard, then the next ones, with a guarded decrement on a single row.
+ * - The product row, also with a guarded decrement.
+ * - All the rows locked together, taking the amount from several of them.
+ * *
+ * Products that are not split only pay the product row decrement, as before. The shard count of
+ * each product is cached for a few seconds; a stale count only changes which rows are tried first.
+ */
+@Service
+public class StockShardService {
+    private static final Duration SHARD_COUNT_TTL = Duration.ofSeconds(10);
+    
+    private final ProductRepository productRepository;
+    private final ProductStockShardRepository shardRepository;
+    private final Cache<UUID, Integer> shardCounts;
+    
+    public StockShardService(
+        ProductRepository productRepository,
+        ProductStockShardRepository shardRepository
+    )
+    {
+        this.productRepository = productRepository;
+        this.shardRepository = shardRepository;
+        this.shardCounts = Caffeine.newBuilder()
+                                   .maximumSize(10_000)
+                                   .expireAfterWrite(SHARD_COUNT_TTL)
+                                   .build();
+    }
+    
+    /**
+     * Reserves stock for the product within the current transaction.
+     * @return {@code false} if the product does not exist or has not enough stock.
+     */
+    public boolean reserve(UUID productId, int amount) {
+        Integer shards = shardCounts.get(
+            productId, (id) -> productRepository.findStockShards(id).orElse(1));
+        
+        if (shards > 1) {
+            int first = ThreadLocalRandom.current().nextInt(shards);
+            for (int i = 0; i < shards; i++) {
+                int shard = (first + i) % shards;
+                if (shardRepository.decreaseShardStock(productId, shard, amount) > 0) return true;
+            }
+        }
+        
+        if (productRepository.decreaseProductStock(productId, amount) > 0) return true;
+        
+        return this.reserveAcrossRows(productId, amount);
+    }
+    
+    /**
+     * Stock held by the shards of the product, without the product row.
+     */
+    public long shardStock(UUID productId) {
+        return shardRepository.sumStock(productId);
+    }
+    
+    /**
+     * Splits the current stock of the product evenly into the given number of shards. With one
+     * shard the stock is merged back into the product row.
+     * @param total New total stock, or {@code null} to keep the current one.
+     * @return {@code false} if the product does not exist.
+     */
+    public boolean split(UUID productId, int shards, Integer total) {
+        Integer productStock = productRepository.lockStock(productId).orElse(null);
+        if (productStock == null) return false;
+        
+        List<ShardStock> current = shardRepository.lockShards(productId);
+        long stock = total != null
+            ? total
+            : productStock + current.stream().mapToLong(ShardStock::getStock).sum();
+        
+        shardRepository.deleteByProductId(productId);
+        
+        if (shards == 1) {
+            productRepository.updateStockShards(productId, Math.toIntExact(stock), 1);
+        } else {
+            List<ProductStockShardEntity> rows = new ArrayList<>(shards);
+            for (int shard = 0; shard < shards; shard++) {
+                long shardStock = stock / shards + (shard < stock % shards ? 1 : 0);
+                rows.add(ProductStockShardEntity.builder()
+                                                .productId(productId)
+                                                .shard(shard)
+                                                .stock(Math.toIntExact(shardStock))
+                                                .build());
+            }
+            shardRepository.saveAll(rows);
+            productRepository.updateStockShards(productId, 0, shards);
+        }
+        
+        this.cacheAfterCommit(productId, shards);
+        return true;
+    }
+    
+    /**
+     * Spreads the stock of the product evenly again across its current shards.
+     * @return {@code false} if the product does not exist.
+     */
+    public boolean rebalance(UUID productId) {
+        Integer shards = productRepository.findStockShards(productId).orElse(null);
+        return shards != null && this.split(productId, shards, null);
+    }
+    
+    private boolean reserveAcrossRows(UUID productId, int amount) {
+        Integer productStock = productRepository.lockStock(productId).orElse(null);
+        if (productStock == null) return false;
+        
+        List<ShardStock> shards = shardRepository.lockShards(productId);
+        long available = productStock + shards.stream().mapToLong(ShardStock::getStock).sum();
+        if (available < amount) return false;
+        
+        int remaining = amount;
+        int fromProduct = Math.min(productStock, remaining);
+        if (fromProduct > 0) {
+            productRepository.applyStockDelta(productId, -fromProduct);
+            remaining -= fromProduct;
+        }
+        
+        for (ShardStock shard : shards) {
+            if (remaining == 0) break;
+            
+            int fromShard = Math.min(shard.getStock(), remaining);
+            if (fromShard > 0) {
+                shardRepository.decreaseShardStock(productId, shard.getShard(), fromShard);
+                remaining -= fromShard;
+            }
+        }
+        
+        return true;
+    }
+    
+    private void cacheAfterCommit(UUID productId, int shards) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                shardCounts.put(productId, shards);
+            }
+        });
+    }
+}
@@ -3,8 +3,11 @@ package fast_order.service.kafka;
 import fast_order.dto.KafkaNotificationTO;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.CompletableFuture;
+
 @Service
 public class KafkaProducerService {
     @Value("${KAFKA_TOPIC_NAME}")
@@ -15,7 +18,17 @@ public class KafkaProducerService {
         this.kafkaTemplate = kafkaTemplate;
     }
     
-    public void sendNotification(KafkaNotificationTO notification) {
-        kafkaTemplate.send(topicName, notification);
+    /**
+     * Sends a notification keyed by its order ID, so events of the same order keep their order
+     * within a partition.
+     * @param notification Notification to publish.
+     * @return Future completed when the broker acknowledges the record.
+     */
+    public CompletableFuture<SendResult<String, KafkaNotificationTO>> sendNotification(
+        KafkaNotificationTO notification
+    )
+    {
+        String key = notification.getOrderId() == null ? null : notification.getOrderId().toString();
+        return kafkaTemplate.send(topicName, key, notification);
     }
 }
@@ -0,0 +1,114 @@
+package fast_order.service.kafka;
+
+import fast_order.dto.KafkaNotificationTO;
+import fast_order.entity.OrderOutboxEntity;
+import fast_order.repository.OrderOutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background relay that drains {@code ORDER_OUTBOX} into the Kafka topic.
+ * -
+ * Each run locks a batch of the oldest rows (skipping rows held by other instances), sends them,
+ * waits for the broker acknowledgements and deletes them in the same transaction. If any send
+ * fails the transaction rolls back and the batch is retried on the next run, so delivery is
+ * at-least-once.
+ * -
+ * Metrics:
+ * - {@code order.outbox.relay.batch.size}: number of notifications published per batch.
+ * - {@code order.outbox.relay.lag}: time between the order change and its publication.
+ * - {@code order.outbox.relay.failures}: batches that could not be published.
+ */
+@Component
+public class OrderOutboxRelay {
+    private static final Logger LOGGER = LoggerFactory.getLogger(OrderOutboxRelay.class);
+    
+    private final OrderOutboxRepository outboxRepository;
+    private final KafkaProducerService kafkaProducer;
+    private final TransactionTemplate transactionTemplate;
+    private final DistributionSummary batchSizeSummary;
+    private final Timer lagTimer;
+    private final Counter failureCounter;
+    
+    @Value("${order.outbox.batch-size}")
+    private Integer batchSize;
+    
+    @Value("${order.outbox.send-timeout-ms}")
+    private Long sendTimeoutMs;
+    
+    public OrderOutboxRelay(
+        OrderOutboxRepository outboxRepository,
+        KafkaProducerService kafkaProducer,
+        PlatformTransactionManager transactionManager,
+        MeterRegistry meterRegistry
+    )
+    {
+        this.outboxRepository = outboxRepository;
+        this.kafkaProducer = kafkaProducer;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSizeSummary = DistributionSummary.builder("order.outbox.relay.batch.size")
+                                                   .description("Notifications published per batch")
+                                                   .register(meterRegistry);
+        this.lagTimer = Timer.builder("order.outbox.relay.lag")
+                             .description("Time from the order change to its publication")
+                             .publishPercentiles(0.5, 0.99)
+                             .register(meterRegistry);
+        this.failureCounter = Counter.builder("order.outbox.relay.failures")
+                                     .description("Outbox batches that failed to publish")
+                                     .register(meterRegistry);
+    }
+    
+    @Scheduled(fixedDelayString = "${order.outbox.relay-interval-ms}")
+    public void relay() {
+        try {
+            Integer published;
+            do {
+                published = transactionTemplate.execute((status) -> this.publishBatch());
+            } while (published != null && published >= batchSize);
+        } catch (Exception ex) {
+            failureCounter.increment();
+            LOGGER.warn("Order outbox relay failed, the batch will be retried: {}", ex.getMessage());
+        }
+    }
+    
+    private int publishBatch() {
+        List<OrderOutboxEntity> batch = outboxRepository.findNextBatch(PageRequest.of(0, batchSize));
+        if (batch.isEmpty()) return 0;
+        
+        CompletableFuture<?>[] acknowledgements = batch.stream().map((event) -> {
+            KafkaNotificationTO notification = KafkaNotificationTO.builder()
+                                                                  .message(event.getMessage())
+                                                                  .orderId(event.getOrderId())
+                                                                  .build();
+            return kafkaProducer.sendNotification(notification);
+        }).toArray(CompletableFuture[]::new);
+        
+        CompletableFuture.allOf(acknowledgements)
+                         .orTimeout(sendTimeoutMs, TimeUnit.MILLISECONDS)
+                         .join();
+        
+        outboxRepository.deleteAllInBatch(batch);
+        
+        LocalDateTime now = LocalDateTime.now();
+        batch.forEach((event) -> lagTimer.record(Duration.between(event.getCreatedAt(), now)));
+        batchSizeSummary.record(batch.size());
+        
+        return batch.size();
+    }
+}
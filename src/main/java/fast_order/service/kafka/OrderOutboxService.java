@@ -0,0 +1,42 @@
+package fast_order.service.kafka;
+
+import fast_order.dto.KafkaNotificationTO;
+import fast_order.entity.OrderOutboxEntity;
+import fast_order.repository.OrderOutboxRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Writes order notifications to the outbox table.
+ * -
+ * It must be called inside the transaction that changes the order, so the notification is
+ * stored if and only if the order change commits. {@link OrderOutboxRelay} publishes them later.
+ */
+@Service
+public class OrderOutboxService {
+    private final OrderOutboxRepository outboxRepository;
+    
+    public OrderOutboxService(OrderOutboxRepository outboxRepository) {
+        this.outboxRepository = outboxRepository;
+    }
+    
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(KafkaNotificationTO notification) {
+        outboxRepository.save(this.toEntity(notification));
+    }
+    
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueAll(List<KafkaNotificationTO> notifications) {
+        outboxRepository.saveAll(notifications.stream().map(this::toEntity).toList());
+    }
+    
+    private OrderOutboxEntity toEntity(KafkaNotificationTO notification) {
+        return OrderOutboxEntity.builder()
+                                .orderId(notification.getOrderId())
+                                .message(notification.getMessage())
+                                .build();
+    }
+}
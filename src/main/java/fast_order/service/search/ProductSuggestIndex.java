@@ -0,0 +1,269 @@
+package fast_order.service.search;
+
+import fast_order.dto.ProductSuggestionTO;
+import fast_order.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.text.Normalizer;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory prefix index (trie) of product names for {@code GET /products/suggest}.
+ * -
+ * Every word of a name is indexed from its first letter to the end of the name, so "gal" finds
+ * "Samsung Galaxy S24". Case and accents are ignored. Each node keeps its
+ * {@code product.suggest.max-results} most popular products (orders in the last
+ * {@code product.suggest.popularity-window}), so a lookup walks the typed prefix and copies a short
+ * list, without touching the database.
+ * -
+ * Updates:
+ * - Products created, renamed or deleted on this instance are applied once their change commits.
+ * - The whole index is rebuilt from the database every {@code product.suggest.refresh-interval-ms},
+ * which refreshes the popularity and picks up changes made by other instances.
+ */
+@Component
+public class ProductSuggestIndex {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProductSuggestIndex.class);
+    private static final Pattern ACCENTS = Pattern.compile("\\p{M}+");
+    private static final Comparator<Entry> RANKING = Comparator.comparingLong(Entry::popularity)
+                                                               .reversed()
+                                                               .thenComparing(Entry::name);
+    
+    private final ProductRepository productRepository;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final int maxResults;
+    private final Duration popularityWindow;
+    
+    private Node root = new Node();
+    private Map<UUID, Entry> entries = new HashMap<>();
+    private List<Runnable> changesDuringRebuild;
+    
+    public ProductSuggestIndex(
+        ProductRepository productRepository,
+        @Value("${product.suggest.max-results}") Integer maxResults,
+        @Value("${product.suggest.popularity-window}") Duration popularityWindow
+    )
+    {
+        this.productRepository = productRepository;
+        this.maxResults = maxResults;
+        this.popularityWindow = popularityWindow;
+    }
+    
+    /**
+     * Most popular products with a word of their name starting with the prefix.
+     * @param prefix Text typed by the user.
+     * @param limit Maximum number of suggestions, capped at {@code product.suggest.max-results}.
+     */
+    public List<ProductSuggestionTO> suggest(String prefix, int limit) {
+        String key = normalize(prefix).strip();
+        if (key.isEmpty()) return List.of();
+        
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.children.get(key.charAt(i));
+            }
+            if (node == null) return List.of();
+            
+            return node.top.stream()
+                           .limit(Math.min(limit, maxResults))
+                           .map((entry) -> new ProductSuggestionTO(entry.id(), entry.name()))
+                           .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Adds the product, or updates its name, once the current transaction commits.
+     */
+    public void put(UUID id, String name) {
+        this.afterCommit(() -> {
+            Entry previous = entries.get(id);
+            if (previous != null) this.unindex(previous);
+            
+            Entry entry = new Entry(id, name, previous != null ? previous.popularity() : 0);
+            entries.put(id, entry);
+            this.index(root, entry);
+        });
+    }
+    
+    /**
+     * Removes the product once the current transaction commits.
+     */
+    public void remove(UUID id) {
+        this.afterCommit(() -> {
+            Entry previous = entries.remove(id);
+            if (previous != null) this.unindex(previous);
+        });
+    }
+    
+    /*
+     * The new index is built without the lock and swapped in at once; suggestions keep being
+     * served from the previous one meanwhile. Changes committed during the rebuild are applied
+     * again on the new index (they may or may not be in what was read).
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(
+        fixedDelayString = "${product.suggest.refresh-interval-ms}",
+        initialDelayString = "${product.suggest.refresh-interval-ms}"
+    )
+    public void rebuild() {
+        this.locked(() -> changesDuringRebuild = new ArrayList<>());
+        
+        try {
+            LocalDateTime since = LocalDateTime.now().minus(popularityWindow);
+            Node newRoot = new Node();
+            Map<UUID, Entry> newEntries = new HashMap<>();
+            
+            for (ProductRepository.ProductPopularity product :
+                productRepository.findPopularity(since)) {
+                Entry entry = new Entry(product.getId(), product.getName(), product.getPopularity());
+                newEntries.put(entry.id(), entry);
+                this.index(newRoot, entry);
+            }
+            
+            this.locked(() -> {
+                root = newRoot;
+                entries = newEntries;
+                changesDuringRebuild.forEach(Runnable::run);
+            });
+        } catch (Exception ex) {
+            LOGGER.warn("Product suggest index could not be rebuilt: {}", ex.getMessage());
+        } finally {
+            this.locked(() -> changesDuringRebuild = null);
+        }
+    }
+    
+    private void index(Node root, Entry entry) {
+        for (String token : tokens(entry.name())) {
+            Node node = root;
+            for (int i = 0; i < token.length(); i++) {
+                node = node.children.computeIfAbsent(token.charAt(i), (key) -> new Node());
+                this.offer(node, entry);
+            }
+            node.ends.add(entry);
+        }
+    }
+    
+    private void unindex(Entry entry) {
+        for (String token : tokens(entry.name())) {
+            List<Node> path = new ArrayList<>(token.length() + 1);
+            Node node = root;
+            path.add(node);
+            for (int i = 0; i < token.length() && node != null; i++) {
+                node = node.children.get(token.charAt(i));
+                if (node != null) path.add(node);
+            }
+            if (node == null) continue;
+            
+            node.ends.remove(entry);
+            
+            // Bottom-up: a node's top list is rebuilt from its own products and its children's.
+            for (int i = path.size() - 1; i >= 0; i--) {
+                Node current = path.get(i);
+                if (i > 0 && current.ends.isEmpty() && current.children.isEmpty()) {
+                    path.get(i - 1).children.remove(token.charAt(i - 1));
+                } else if (current.top.contains(entry)) {
+                    this.recompute(current);
+                }
+            }
+        }
+    }
+    
+    private void offer(Node node, Entry entry) {
+        if (node.top.contains(entry)) return;
+        
+        List<Entry> top = new ArrayList<>(node.top);
+        top.add(entry);
+        top.sort(RANKING);
+        if (top.size() > maxResults) top.remove(top.size() - 1);
+        node.top = top;
+    }
+    
+    private void recompute(Node node) {
+        List<Entry> candidates = new ArrayList<>(node.ends);
+        node.children.values().forEach((child) -> candidates.addAll(child.top));
+        
+        node.top = candidates.stream().distinct().sorted(RANKING).limit(maxResults).toList();
+    }
+    
+    private void afterCommit(Runnable change) {
+        Runnable apply = () -> this.locked(() -> {
+            change.run();
+            if (changesDuringRebuild != null) changesDuringRebuild.add(change);
+        });
+        
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply.run();
+            return;
+        }
+        
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                apply.run();
+            }
+        });
+    }
+    
+    private void locked(Runnable action) {
+        lock.writeLock().lock();
+        try {
+            action.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /*
+     * The full name and the rest of the name from the start of each following word.
+     */
+    private static List<String> tokens(String name) {
+        String normalized = normalize(name).strip();
+        List<String> tokens = new ArrayList<>();
+        
+        for (int i = 0; i < normalized.length(); i++) {
+            boolean wordStart = i == 0 || !Character.isLetterOrDigit(normalized.charAt(i - 1));
+            if (wordStart && Character.isLetterOrDigit(normalized.charAt(i))) {
+                tokens.add(normalized.substring(i));
+            }
+        }
+        return tokens;
+    }
+    
+    private static String normalize(String text) {
+        if (text == null) return "";
+        
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        return ACCENTS.matcher(decomposed).replaceAll("").toLowerCase();
+    }
+    
+    private record Entry(UUID id, String name, long popularity) {
+    }
+    
+    private static final class Node {
+        private final Map<Character, Node> children = new HashMap<>();
+        private final List<Entry> ends = new ArrayList<>(1);
+        private List<Entry> top = List.of();
+    }
+}
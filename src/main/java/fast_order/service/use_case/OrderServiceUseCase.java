@@ -1,17 +1,25 @@
 package fast_order.service.use_case;
 
+import fast_order.dto.CursorPageTO;
+import fast_order.dto.OrderBatchResultTO;
+import fast_order.dto.OrderFilterTO;
 import fast_order.dto.OrderTO;
 
+import java.io.OutputStream;
 import java.util.List;
 import java.util.UUID;
 
 public interface OrderServiceUseCase {
-    List<OrderTO> findAllOrders();
+    CursorPageTO<OrderTO> findOrders(OrderFilterTO filter, String cursor, Integer size);
+    
+    void exportOrders(OrderFilterTO filter, OutputStream output);
     
     OrderTO findOrderById(UUID id);
     
     OrderTO createOrder(OrderTO order);
     
+    List<OrderBatchResultTO> createOrders(List<OrderTO> orders);
+    
     OrderTO updateOrder(UUID id, OrderTO order);
     
     String cancelOrder(UUID id);
@@ -1,18 +1,29 @@
 package fast_order.service.use_case;
 
 import fast_order.dto.PriceUpdateTO;
+import fast_order.dto.ProductSuggestionTO;
 import fast_order.dto.ProductTO;
+import fast_order.dto.SlicePageTO;
+import fast_order.dto.StockUpdateTO;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
 public interface ProductServiceUseCase {
     Page<ProductTO> findAllProducts(Pageable pageable, Map<String, String> keywords);
     
+    SlicePageTO<ProductTO> findProductSlice(Pageable pageable, Map<String, String> keywords);
+    
+    List<ProductSuggestionTO> suggestProducts(String text, Integer limit);
+    
     ProductTO findProductById(UUID id);
     
+    Map<UUID, Double> findProductPrices(Collection<UUID> ids);
+    
     ProductTO findProductByName(String name);
     
     ProductTO createProduct(ProductTO product);
@@ -25,5 +36,15 @@ public interface ProductServiceUseCase {
     
     ProductTO updateProductStock(UUID id, Integer amount);
     
+    List<ProductTO> updateProductPrices(Map<UUID, PriceUpdateTO> prices);
+    
+    List<ProductTO> updateProductStocks(Map<UUID, StockUpdateTO> amounts);
+    
+    boolean reserveProductStock(UUID id, Integer amount);
+    
     void decreaseProductStock(UUID id, Integer amount);
+    
+    ProductTO splitProductStock(UUID id, Integer shards);
+    
+    ProductTO rebalanceProductStock(UUID id);
 }
@@ -2,7 +2,9 @@ package fast_order.service.use_case;
 
 import fast_order.dto.UserTO;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 public interface UserServiceUseCase {
@@ -10,8 +12,12 @@ public interface UserServiceUseCase {
     
     UserTO findUserById(UUID id);
     
+    Set<UUID> findExistingUserIds(Collection<UUID> ids);
+    
     UserTO findUserByEmail(String email);
     
+    Long findTokenVersion(UUID id);
+    
     UserTO createUser(UserTO user);
     
     UserTO updateUser(UUID id, UserTO user);
@@ -0,0 +1,40 @@
+package fast_order.utils;
+
+import fast_order.commons.enums.APISuccess;
+import fast_order.dto.CursorTO;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Getter;
+
+import java.util.List;
+
+@Schema(
+    name = "APIResponseDataCursor",
+    description = """
+      DTO representing a standard successful API response with cursor pagination.
+      It contains the operation result, status, and response metadata.
+    """,
+    example = """
+           {
+             "cursor": {
+               "nextCursor": "MjAyNS0wNC0xM1QxNTo0MjowMHw3ZjNhYjE0Yy0wYzJmLTRmYjQ",
+               "pageSize": 20,
+               "numberOfElements": 20,
+               "hasNext": true
+             },
+             "data": [{}, {}],
+             "hasError": false,
+             "message": "Resource successfully recovered.",
+             "statusCode": 200,
+             "timestamp": "2025-04-13T15:42:00"
+           }
+       """
+)
+@Getter
+public class APIResponseDataCursor<T> extends APIResponseData<T> {
+    private final CursorTO cursor;
+    
+    public APIResponseDataCursor(APISuccess success, CursorTO cursor, List<T> data) {
+        super(success, data);
+        this.cursor = cursor;
+    }
+}
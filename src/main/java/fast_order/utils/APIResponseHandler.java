@@ -1,8 +1,12 @@
 package fast_order.utils;
 
 import fast_order.commons.enums.APISuccess;
+import fast_order.dto.CursorPageTO;
+import fast_order.dto.CursorTO;
 import fast_order.dto.PaginationTO;
+import fast_order.dto.SlicePageTO;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.ResponseEntity;
 
 /**
@@ -24,6 +28,23 @@ public class APIResponseHandler {
         return new ResponseEntity<>(responseData, success.getStatus());
     }
     
+    /**
+     * Same as {@link #handleResponse(APISuccess, Object)}, with the resource version as ETag.
+     */
+    public static <T> ResponseEntity<APIResponseData<T>> handleResponse(
+        APISuccess success,
+        T data,
+        Long version
+    )
+    {
+        APIResponseData<T> responseData = new APIResponseData<>(success, data);
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(success.getStatus());
+        
+        if (version != null) response.eTag(version.toString());
+        
+        return response.body(responseData);
+    }
+    
     public static <T> ResponseEntity<APIResponseDataPagination<T>> handleResponse(
         APISuccess success,
         Page<T> page
@@ -38,7 +59,9 @@ public class APIResponseHandler {
             page.isLast(),
             page.getNumberOfElements(),
             page.getSort().isSorted(),
-            page.getSort().isUnsorted()
+            page.getSort().isUnsorted(),
+            page.hasNext(),
+            null
         );
         APIResponseDataPagination<T> responseData = new APIResponseDataPagination<>(
             success,
@@ -47,4 +70,62 @@ public class APIResponseHandler {
         );
         return new ResponseEntity<>(responseData, success.getStatus());
     }
+    
+    /**
+     * Page of a listing that was not counted. The totals are only present when an approximate
+     * total is available.
+     */
+    public static <T> ResponseEntity<APIResponseDataPagination<T>> handleResponse(
+        APISuccess success,
+        SlicePageTO<T> page
+    )
+    {
+        Slice<T> slice = page.slice();
+        Long total = page.approximateTotal();
+        
+        // Never report fewer items than the pages already seen.
+        if (total != null) {
+            long seen = slice.getPageable().getOffset() + slice.getNumberOfElements();
+            total = Math.max(total, slice.hasNext() ? seen + 1 : seen);
+        }
+        
+        PaginationTO pagination = new PaginationTO(
+            slice.getPageable().getPageNumber(),
+            slice.getPageable().getPageSize(),
+            total,
+            total == null ? null : (int) Math.ceil((double) total / slice.getSize()),
+            slice.isFirst(),
+            slice.isLast(),
+            slice.getNumberOfElements(),
+            slice.getSort().isSorted(),
+            slice.getSort().isUnsorted(),
+            slice.hasNext(),
+            total == null ? null : true
+        );
+        APIResponseDataPagination<T> responseData = new APIResponseDataPagination<>(
+            success,
+            pagination,
+            slice.getContent()
+        );
+        return new ResponseEntity<>(responseData, success.getStatus());
+    }
+    
+    public static <T> ResponseEntity<APIResponseDataCursor<T>> handleResponse(
+        APISuccess success,
+        CursorPageTO<T> page
+    )
+    {
+        CursorTO cursor = new CursorTO(
+            page.nextCursor(),
+            page.pageSize(),
+            page.content().size(),
+            page.hasNext()
+        );
+        APIResponseDataCursor<T> responseData = new APIResponseDataCursor<>(
+            success,
+            cursor,
+            page.content()
+        );
+        return new ResponseEntity<>(responseData, success.getStatus());
+    }
 }
@@ -0,0 +1,82 @@
+package fast_order.utils;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads CSV records (RFC 4180) one at a time from a stream, without loading it whole.
+ * -
+ * Fields are separated by commas and may be enclosed in double quotes, in which case they can hold
+ * commas, line breaks and doubled quotes ({@code ""}). Lines end with LF or CRLF; blank lines are
+ * skipped. Fields are returned as read, without trimming.
+ */
+public class CsvReader {
+    private final Reader reader;
+    private int next = -2;
+    
+    /**
+     * @param reader Source of the CSV text, ideally buffered.
+     */
+    public CsvReader(Reader reader) {
+        this.reader = reader;
+    }
+    
+    /**
+     * Reads the next record.
+     * @return Fields of the record, or null at the end of the stream.
+     * @throws IOException If the stream cannot be read or a quoted field is not closed.
+     */
+    public List<String> readRecord() throws IOException {
+        int current = this.read();
+        while (current == '\r' || current == '\n') current = this.read();
+        if (current == -1) return null;
+        
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        
+        while (true) {
+            if (quoted) {
+                if (current == -1) throw new IOException("Unclosed quoted field");
+                if (current == '"') {
+                    if (this.peek() == '"') {
+                        field.append('"');
+                        this.read();
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append((char) current);
+                }
+            } else if (current == '"' && field.isEmpty()) {
+                quoted = true;
+            } else if (current == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (current == '\n' || current == '\r' || current == -1) {
+                if (current == '\r' && this.peek() == '\n') this.read();
+                fields.add(field.toString());
+                return fields;
+            } else {
+                field.append((char) current);
+            }
+            current = this.read();
+        }
+    }
+    
+    private int read() throws IOException {
+        if (next != -2) {
+            int value = next;
+            next = -2;
+            return value;
+        }
+        return reader.read();
+    }
+    
+    private int peek() throws IOException {
+        if (next == -2) next = reader.read();
+        return next;
+    }
+}
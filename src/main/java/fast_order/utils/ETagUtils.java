@@ -0,0 +1,34 @@
+package fast_order.utils;
+
+import fast_order.commons.enums.APIError;
+import fast_order.exception.APIRequestException;
+
+/**
+ * Conversion between entity versions and HTTP entity tags.
+ * *
+ * The ETag of an order or a product is its {@code version}, quoted. Clients send it back in
+ * {@code If-Match} to update the resource only if it has not changed since they read it.
+ */
+public class ETagUtils {
+    /**
+     * Version expected by an {@code If-Match} header.
+     * @param ifMatch Header value, e.g. {@code "3"} or {@code W/"3"}.
+     * @return The version, or {@code null} if the header is absent or {@code *}.
+     * @throws APIRequestException BAD_REQUEST if the value is not a version of this API.
+     */
+    public static Long parseIfMatch(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) return null;
+        
+        String tag = ifMatch.trim();
+        if (tag.startsWith("W/")) tag = tag.substring(2);
+        
+        try {
+            return Long.valueOf(tag.replace("\"", ""));
+        } catch (NumberFormatException ex) {
+            APIError.BAD_REQUEST.setTitle("Invalid If-Match");
+            APIError.BAD_REQUEST.setMessage(
+                "The If-Match header must contain the ETag returned by this API.");
+            throw new APIRequestException(APIError.BAD_REQUEST);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package fast_order.utils;
+
+import fast_order.commons.enums.APIError;
+import fast_order.dto.OrderFilterTO;
+import fast_order.entity.OrderEntity;
+import fast_order.exception.APIRequestException;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Specifications for the order listing.
+ * *
+ * Orders are read newest first on the key {@code (created_at, order_id)}. The cursor is the key
+ * of the last order of a page, so the next page is a range scan on that index instead of an
+ * {@code OFFSET} that reads and discards all the previous rows.
+ */
+public class OrderSpecification {
+    private static final String ID = "id";
+    private static final String USER = "user";
+    private static final String PRODUCT = "product";
+    private static final String STATUS = "status";
+    private static final String CREATED_AT = "createdAt";
+    
+    private static final String CURSOR_SEPARATOR = "|";
+    
+    public static final Sort KEYSET_SORT = Sort.by(Sort.Direction.DESC, CREATED_AT, ID);
+    
+    public static Specification<OrderEntity> filterOrders(OrderFilterTO filter) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            
+            if (filter.userId() != null) {
+                predicates.add(cb.equal(root.get(USER).get(ID), filter.userId()));
+            }
+            if (filter.productId() != null) {
+                predicates.add(cb.equal(root.get(PRODUCT).get(ID), filter.productId()));
+            }
+            if (filter.status() != null) {
+                predicates.add(cb.equal(root.get(STATUS), filter.status()));
+            }
+            if (filter.from() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get(CREATED_AT), filter.from()));
+            }
+            if (filter.to() != null) {
+                predicates.add(cb.lessThan(root.get(CREATED_AT), filter.to()));
+            }
+            
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+    
+    /**
+     * Orders strictly after the given cursor in {@link #KEYSET_SORT} order.
+     * @param cursor Cursor returned with the previous page, or {@code null} for the first page.
+     */
+    public static Specification<OrderEntity> after(String cursor) {
+        if (cursor == null || cursor.isBlank()) return Specification.where(null);
+        
+        String[] key = decodeCursor(cursor);
+        LocalDateTime createdAt = LocalDateTime.parse(key[0]);
+        UUID id = UUID.fromString(key[1]);
+        
+        return (root, query, cb) -> cb.or(
+            cb.lessThan(root.get(CREATED_AT), createdAt),
+            cb.and(cb.equal(root.get(CREATED_AT), createdAt), cb.lessThan(root.get(ID), id))
+        );
+    }
+    
+    public static String encodeCursor(OrderEntity order) {
+        String key = order.getCreatedAt() + CURSOR_SEPARATOR + order.getId();
+        return Base64.getUrlEncoder()
+                     .withoutPadding()
+                     .encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private static String[] decodeCursor(String cursor) {
+        try {
+            String key = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = key.split("\\" + CURSOR_SEPARATOR);
+            
+            if (parts.length != 2) throw new IllegalArgumentException(cursor);
+            
+            LocalDateTime.parse(parts[0]);
+            UUID.fromString(parts[1]);
+            return parts;
+        } catch (RuntimeException ex) {
+            APIError.BAD_REQUEST.setTitle("Invalid cursor");
+            APIError.BAD_REQUEST.setMessage(
+                "The cursor is not valid. Use the value returned by the previous page.");
+            throw new APIRequestException(APIError.BAD_REQUEST);
+        }
+    }
+}
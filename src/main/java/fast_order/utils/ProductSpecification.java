@@ -19,6 +19,20 @@ public class ProductSpecification {
     
     private static final Set<String> ALLOWED_KEY = Set.of(NAME, STOCK, PRICE, DESCRIPTION);
     
+    /**
+     * Products whose name or description contains the text. Used for the search when the
+     * database has no full-text index (product.search.full-text=false).
+     */
+    public static Specification<ProductEntity> containsText(String text) {
+        return (root, query, cb) -> {
+            String search = "%" + text.trim().toLowerCase() + "%";
+            return cb.or(
+                cb.like(cb.lower(root.get(NAME)), search),
+                cb.like(cb.lower(root.get(DESCRIPTION)), search)
+            );
+        };
+    }
+    
     public static Specification<ProductEntity> filterProducts(Map<String, String> keywords) {
         return (root, query, cb) -> {
             List<Predicate> predicates = new ArrayList<>();
@@ -0,0 +1,103 @@
+package fast_order.utils;
+
+import fast_order.commons.enums.APIError;
+import fast_order.exception.APIRequestException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent loads of the same key into one.
+ * -
+ * The first caller for a key runs the load; callers that arrive while it is running wait for its
+ * result, for at most the configured time, instead of running the same query again. Nothing is
+ * kept once the load finishes: this is not a cache.
+ * -
+ * Callers inside a transaction always load on their own, since they may need to see their own
+ * uncommitted changes. The result is shared between callers and must not be modified.
+ * *
+ * Meters: {@code single-flight.coalesced} and {@code single-flight.timeouts}, tagged by name.
+ * @param <K> Key type.
+ * @param <V> Loaded value type.
+ */
+public class SingleFlight<K, V> {
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Duration maxWait;
+    private final Counter coalesced;
+    private final Counter timeouts;
+    
+    public SingleFlight(String name, Duration maxWait, MeterRegistry meterRegistry) {
+        this.maxWait = maxWait;
+        this.coalesced = Counter.builder("single-flight.coalesced")
+                                .description("Loads served by another caller's load")
+                                .tag("name", name)
+                                .register(meterRegistry);
+        this.timeouts = Counter.builder("single-flight.timeouts")
+                               .description("Callers that stopped waiting for a shared load")
+                               .tag("name", name)
+                               .register(meterRegistry);
+    }
+    
+    /**
+     * Runs the load for the key, or waits for the one already running.
+     * @param key Key being loaded.
+     * @param loader Load to run if none is running for the key.
+     * @return The loaded value.
+     * @throws APIRequestException TIMEOUT_ERROR if the running load takes longer than allowed.
+     */
+    public V load(K key, Supplier<V> loader) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) return loader.get();
+        
+        CompletableFuture<V> execution = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, execution);
+        
+        if (running != null) {
+            coalesced.increment();
+            return this.await(running);
+        }
+        
+        try {
+            V value = loader.get();
+            execution.complete(value);
+            return value;
+        } catch (RuntimeException ex) {
+            execution.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(key, execution);
+        }
+    }
+    
+    /**
+     * Makes callers arriving from now on start a new load for the key, e.g. after it is modified.
+     * Callers already waiting still get the result of the running load.
+     * @param key Key to forget.
+     */
+    public void forget(K key) {
+        inFlight.remove(key);
+    }
+    
+    private V await(CompletableFuture<V> running) {
+        try {
+            return running.get(maxWait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) throw cause;
+            throw new APIRequestException(APIError.INTERNAL_SERVER_ERROR);
+        } catch (TimeoutException ex) {
+            timeouts.increment();
+            throw new APIRequestException(APIError.TIMEOUT_ERROR);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new APIRequestException(APIError.INTERNAL_SERVER_ERROR);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+-- Runs on every start after Hibernate updates the tables (spring.jpa.defer-datasource-initialization)
+-- Every statement must be idempotent
+
+-- Product search (GET /products?q=): weighted full-text vector kept by Postgres, plus trigram
+-- indexes for typo-tolerant matches and for the substring filters on name and description
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+ALTER TABLE fast_order_schema.PRODUCTS
+    ADD COLUMN IF NOT EXISTS search_vector tsvector GENERATED ALWAYS AS (
+        setweight(to_tsvector('simple', coalesce(name, '')), 'A') ||
+        setweight(to_tsvector('simple', coalesce(description, '')), 'B')
+    ) STORED;
+
+CREATE INDEX IF NOT EXISTS idx_products_search_vector
+    ON fast_order_schema.PRODUCTS USING GIN (search_vector);
+
+CREATE INDEX IF NOT EXISTS idx_products_name_trgm
+    ON fast_order_schema.PRODUCTS USING GIN (lower(name) gin_trgm_ops);
+
+CREATE INDEX IF NOT EXISTS idx_products_description_trgm
+    ON fast_order_schema.PRODUCTS USING GIN (lower(description) gin_trgm_ops);
+
+-- Orders created before ORDERS.unit_price existed take the current price of their product
+UPDATE fast_order_schema.ORDERS ord
+SET unit_price = prod.price
+FROM fast_order_schema.PRODUCTS prod
+WHERE ord.unit_price IS NULL AND prod.product_id = ord.product_id;
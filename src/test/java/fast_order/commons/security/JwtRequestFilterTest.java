@@ -0,0 +1,123 @@
+package fast_order.commons.security;
+
+import fast_order.commons.enums.APIError;
+import fast_order.commons.enums.RoleType;
+import fast_order.dto.RoleTO;
+import fast_order.dto.UserTO;
+import fast_order.exception.APIRequestException;
+import fast_order.service.RoleService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class JwtRequestFilterTest {
+    private static final String EMAIL = "user@mail.com";
+    
+    private final UUID userId = UUID.randomUUID();
+    
+    private UserDetailsService userDetailsService;
+    private TokenRevocationService tokenRevocation;
+    private JwtUtil jwtUtil;
+    private JwtRequestFilter filter;
+    
+    @BeforeEach
+    void setUp() {
+        RoleService roleService = mock(RoleService.class);
+        when(roleService.findRoleById(any())).thenReturn(
+            RoleTO.builder().roleName(RoleType.USER).build());
+        
+        String secretKey = Base64.getEncoder().encodeToString(new byte[32]);
+        jwtUtil = new JwtUtil(roleService, new SimpleMeterRegistry(), secretKey, 60_000L, 100L);
+        
+        userDetailsService = mock(UserDetailsService.class);
+        tokenRevocation = mock(TokenRevocationService.class);
+        filter = new JwtRequestFilter(userDetailsService, jwtUtil, tokenRevocation);
+        ReflectionTestUtils.setField(filter, "stateless", true);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+    
+    @Test
+    void authenticatesFromClaimsWithoutLoadingUser() throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+        
+        filter.doFilter(this.request(this.token(3L)), new MockHttpServletResponse(), chain);
+        
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        assertThat(authentication.getName()).isEqualTo(EMAIL);
+        assertThat(authentication.getAuthorities()).extracting(Object::toString)
+                                                   .containsExactly("ROLE_USER");
+        assertThat(chain.getRequest()).isNotNull();
+        verify(tokenRevocation).isRevoked(userId, 3L);
+        verify(userDetailsService, never()).loadUserByUsername(any());
+    }
+    
+    @Test
+    void rejectsRevokedToken() {
+        when(tokenRevocation.isRevoked(userId, 3L)).thenReturn(true);
+        MockFilterChain chain = new MockFilterChain();
+        MockHttpServletRequest request = this.request(this.token(3L));
+        
+        assertThatThrownBy(() -> filter.doFilter(request, new MockHttpServletResponse(), chain))
+            .isInstanceOf(APIRequestException.class)
+            .extracting("apiError").isEqualTo(APIError.UNAUTHORIZED);
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+        assertThat(chain.getRequest()).isNull();
+    }
+    
+    @Test
+    void loadsUserWhenStatelessModeIsDisabled() throws Exception {
+        ReflectionTestUtils.setField(filter, "stateless", false);
+        when(userDetailsService.loadUserByUsername(EMAIL)).thenReturn(
+            User.withUsername(EMAIL).password("").authorities("ROLE_USER").build());
+        
+        filter.doFilter(
+            this.request(this.token(3L)), new MockHttpServletResponse(), new MockFilterChain());
+        
+        assertThat(SecurityContextHolder.getContext().getAuthentication().getName())
+            .isEqualTo(EMAIL);
+        verify(tokenRevocation, never()).isRevoked(any(), anyLong());
+    }
+    
+    private String token(Long tokenVersion) {
+        UserTO user = UserTO.builder()
+                            .id(userId)
+                            .name("User")
+                            .email(EMAIL)
+                            .roleId(UUID.randomUUID())
+                            .build();
+        return jwtUtil.generateToken(user, tokenVersion);
+    }
+    
+    private MockHttpServletRequest request(String token) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/orders");
+        request.setServletPath("/orders");
+        request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+        return request;
+    }
+}
@@ -0,0 +1,160 @@
+package fast_order.service;
+
+import fast_order.commons.enums.APIError;
+import fast_order.dto.OrderTO;
+import fast_order.entity.IdempotencyKeyEntity;
+import fast_order.exception.APIRequestException;
+import fast_order.repository.IdempotencyKeyRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OrderIdempotencyServiceTest {
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+    private OrderService orderService;
+    private OrderIdempotencyService idempotencyService;
+    
+    @BeforeEach
+    void setUp() {
+        idempotencyKeyRepository = mock(IdempotencyKeyRepository.class);
+        orderService = mock(OrderService.class);
+        
+        idempotencyService = new OrderIdempotencyService(
+            idempotencyKeyRepository, orderService, mock(PlatformTransactionManager.class),
+            Duration.ofHours(24), 1000L
+        );
+        ReflectionTestUtils.setField(idempotencyService, "waitTimeoutMs", 5000L);
+        
+        when(idempotencyKeyRepository.findById(anyString())).thenReturn(Optional.empty());
+        when(orderService.createOrder(any(OrderTO.class)))
+            .thenAnswer((call) -> call.getArgument(0));
+    }
+    
+    @Test
+    void replaysOrderForSameKey() {
+        OrderTO first = idempotencyService.createOrder("user@mail.com", "key-1", this.order(2));
+        OrderTO retry = idempotencyService.createOrder("user@mail.com", "key-1", this.order(2));
+        
+        assertThat(retry).isSameAs(first);
+        verify(orderService, times(1)).createOrder(any(OrderTO.class));
+    }
+    
+    @Test
+    void scopesKeysPerUser() {
+        idempotencyService.createOrder("first@mail.com", "key-1", this.order(2));
+        idempotencyService.createOrder("second@mail.com", "key-1", this.order(2));
+        
+        verify(orderService, times(2)).createOrder(any(OrderTO.class));
+    }
+    
+    @Test
+    void rejectsKeyReusedWithDifferentOrder() {
+        idempotencyService.createOrder("user@mail.com", "key-1", this.order(2));
+        
+        OrderTO changed = this.order(3);
+        
+        assertThatThrownBy(() -> idempotencyService.createOrder("user@mail.com", "key-1", changed))
+            .isInstanceOf(APIRequestException.class)
+            .extracting("apiError").isEqualTo(APIError.UNPROCESSABLE_ENTITY);
+    }
+    
+    @Test
+    void rejectsBlankKey() {
+        OrderTO order = this.order(2);
+        
+        assertThatThrownBy(() -> idempotencyService.createOrder("user@mail.com", " ", order))
+            .isInstanceOf(APIRequestException.class)
+            .extracting("apiError").isEqualTo(APIError.BAD_REQUEST);
+    }
+    
+    @Test
+    void replaysOrderOfConcurrentDuplicateKey() {
+        OrderTO order = this.order(2);
+        OrderTO stored = this.order(2);
+        stored.setId(UUID.randomUUID());
+        
+        // Another instance claimed the key first: the insert fails on the primary key.
+        doThrow(new DataIntegrityViolationException("duplicate key"))
+            .when(idempotencyKeyRepository).insert(anyString(), anyString(), any(), any());
+        when(idempotencyKeyRepository.findById(anyString())).thenReturn(
+            Optional.empty(),
+            Optional.of(IdempotencyKeyEntity.builder()
+                                            .key("scoped")
+                                            .fingerprint(this.fingerprintOf(order))
+                                            .orderId(stored.getId())
+                                            .createdAt(LocalDateTime.now())
+                                            .build())
+        );
+        when(orderService.findOrderById(stored.getId())).thenReturn(stored);
+        
+        OrderTO replayed = idempotencyService.createOrder("user@mail.com", "key-1", order);
+        
+        assertThat(replayed).isSameAs(stored);
+        verify(orderService, never()).createOrder(any(OrderTO.class));
+    }
+    
+    @Test
+    void waitsForRequestInFlightWithSameKey() throws Exception {
+        CountDownLatch creating = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(orderService.createOrder(any(OrderTO.class))).thenAnswer((call) -> {
+            creating.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return call.getArgument(0);
+        });
+        
+        CompletableFuture<OrderTO> first = CompletableFuture.supplyAsync(
+            () -> idempotencyService.createOrder("user@mail.com", "key-1", this.order(2)));
+        assertThat(creating.await(5, TimeUnit.SECONDS)).isTrue();
+        
+        CompletableFuture<OrderTO> second = CompletableFuture.supplyAsync(
+            () -> idempotencyService.createOrder("user@mail.com", "key-1", this.order(2)));
+        release.countDown();
+        
+        assertThat(second.get(5, TimeUnit.SECONDS)).isSameAs(first.get(5, TimeUnit.SECONDS));
+        verify(orderService, times(1)).createOrder(any(OrderTO.class));
+        verify(idempotencyKeyRepository, times(1)).insert(anyString(), anyString(), any(), any());
+    }
+    
+    @Test
+    void storesKeyWithIdOfCreatedOrder() {
+        OrderTO created = idempotencyService.createOrder("user@mail.com", "key-1", this.order(2));
+        
+        verify(idempotencyKeyRepository)
+            .insert(anyString(), anyString(), eq(created.getId()), any());
+    }
+    
+    private OrderTO order(int amount) {
+        return OrderTO.builder()
+                      .userId(new UUID(0, 1))
+                      .productId(new UUID(0, 2))
+                      .amount(amount)
+                      .build();
+    }
+    
+    private String fingerprintOf(OrderTO order) {
+        return ReflectionTestUtils.invokeMethod(idempotencyService, "fingerprint", order);
+    }
+}
@@ -0,0 +1,113 @@
+package fast_order.service;
+
+import fast_order.dto.ProductTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductCacheTest {
+    private final UUID productId = UUID.randomUUID();
+    private final AtomicInteger loads = new AtomicInteger();
+    
+    private final Function<UUID, Optional<ProductTO>> loader = (id) -> {
+        loads.incrementAndGet();
+        return Optional.of(ProductTO.builder().id(id).name("Keyboard").stock(10).build());
+    };
+    
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+    
+    @Test
+    void cachesLoadedProduct() {
+        ProductCache productCache = this.cache(true);
+        
+        productCache.get(productId, loader);
+        productCache.get(productId, loader);
+        
+        assertThat(loads).hasValue(1);
+    }
+    
+    @Test
+    void evictedProductIsLoadedAgain() {
+        ProductCache productCache = this.cache(true);
+        
+        productCache.get(productId, loader);
+        productCache.evict(productId);
+        productCache.get(productId, loader);
+        
+        assertThat(loads).hasValue(2);
+    }
+    
+    @Test
+    void loadRacingWithEvictionIsNotCached() {
+        ProductCache productCache = this.cache(true);
+        
+        // A write commits and evicts while the read of the old row is running.
+        productCache.get(productId, (id) -> {
+            productCache.evict(id);
+            return loader.apply(id);
+        });
+        productCache.get(productId, loader);
+        
+        assertThat(loads).hasValue(2);
+    }
+    
+    @Test
+    void evictsAgainWhenTransactionEnds() {
+        ProductCache productCache = this.cache(true);
+        TransactionSynchronizationManager.initSynchronization();
+        
+        productCache.evict(productId);
+        productCache.get(productId, loader);
+        
+        TransactionSynchronizationManager.getSynchronizations().forEach((synchronization) ->
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        TransactionSynchronizationManager.clearSynchronization();
+        productCache.get(productId, loader);
+        
+        assertThat(loads).hasValue(2);
+    }
+    
+    @Test
+    void evictAllDropsEveryProduct() {
+        ProductCache productCache = this.cache(true);
+        UUID otherId = UUID.randomUUID();
+        
+        productCache.get(productId, loader);
+        productCache.get(otherId, loader);
+        productCache.evictAll();
+        productCache.get(productId, loader);
+        productCache.get(otherId, loader);
+        
+        assertThat(loads).hasValue(4);
+    }
+    
+    @Test
+    void disabledCacheAlwaysLoads() {
+        ProductCache productCache = this.cache(false);
+        
+        productCache.get(productId, loader);
+        productCache.get(productId, loader);
+        
+        assertThat(loads).hasValue(2);
+    }
+    
+    private ProductCache cache(boolean enabled) {
+        return new ProductCache(
+            new SimpleMeterRegistry(), enabled, 100L, Duration.ofMinutes(1), Duration.ofSeconds(1));
+    }
+}
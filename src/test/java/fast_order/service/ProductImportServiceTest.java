@@ -0,0 +1,231 @@
+package fast_order.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fast_order.commons.enums.APIError;
+import fast_order.dto.ProductImportErrorTO;
+import fast_order.dto.ProductImportResultTO;
+import fast_order.exception.APIRequestException;
+import fast_order.service.inventory.InventoryLedger;
+import fast_order.service.inventory.StockShardService;
+import fast_order.service.search.ProductSuggestIndex;
+import jakarta.validation.Validation;
+import jakarta.validation.ValidatorFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Collection;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ProductImportServiceTest {
+    private static final String HEADER = "name,price,stock,description\n";
+    
+    private ValidatorFactory validatorFactory;
+    private JdbcTemplate jdbcTemplate;
+    private ProductCache productCache;
+    private ProductSuggestIndex productSuggestIndex;
+    private StockShardService stockShardService;
+    private ProductImportService importService;
+    
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        jdbcTemplate = mock(JdbcTemplate.class);
+        productCache = mock(ProductCache.class);
+        productSuggestIndex = mock(ProductSuggestIndex.class);
+        stockShardService = mock(StockShardService.class);
+        ObjectProvider<InventoryLedger> noLedger = mock(ObjectProvider.class);
+        
+        importService = new ProductImportService(
+            jdbcTemplate, mock(PlatformTransactionManager.class), new ObjectMapper(),
+            validatorFactory.getValidator(), productCache, productSuggestIndex, stockShardService,
+            noLedger
+        );
+        ReflectionTestUtils.setField(importService, "batchSize", 100);
+        ReflectionTestUtils.setField(importService, "maxErrors", 10);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        validatorFactory.close();
+    }
+    
+    @Test
+    void importsValidRows() {
+        ProductImportResultTO result = this.importCsv(
+            HEADER +
+                "Laptop M1,999.99,5,Laptop with 16GB of memory\n" +
+                "\"Mouse, wireless\",19.5,40,Wireless mouse with USB receiver\n"
+        );
+        
+        assertThat(result.getRows()).isEqualTo(2);
+        assertThat(result.getImported()).isEqualTo(2);
+        assertThat(result.getFailed()).isZero();
+        assertThat(result.getErrors()).isEmpty();
+        verify(productCache).evictAll();
+        verify(productSuggestIndex).rebuild();
+    }
+    
+    @Test
+    void reportsInvalidRowsByNumber() {
+        ProductImportResultTO result = this.importCsv(
+            HEADER +
+                "Laptop M1,cheap,5,Laptop with 16GB of memory\n" +
+                "Keyboard K2,49.9,,Mechanical keyboard with blue switches\n" +
+                "Monitor 27,199.9,8,Monitor with a 27 inch panel\n"
+        );
+        
+        assertThat(result.getRows()).isEqualTo(3);
+        assertThat(result.getImported()).isEqualTo(1);
+        assertThat(result.getFailed()).isEqualTo(2);
+        assertThat(result.getErrors()).extracting(ProductImportErrorTO::getRow)
+                                      .containsExactly(1L, 2L);
+        assertThat(result.getErrors().get(0).getReasons()).containsKey("price");
+        assertThat(result.getErrors().get(1).getReasons()).containsKey("stock");
+    }
+    
+    @Test
+    @SuppressWarnings("unchecked")
+    void retriesRejectedBatchRowByRow() {
+        // The database rejects any statement holding the row named "Broken product".
+        when(jdbcTemplate.batchUpdate(
+            anyString(), any(Collection.class), anyInt(),
+            any(ParameterizedPreparedStatementSetter.class)
+        )).thenAnswer((call) -> {
+            Collection<Object> rows = call.getArgument(1);
+            ParameterizedPreparedStatementSetter<Object> setter = call.getArgument(3);
+            PreparedStatement statement = mock(PreparedStatement.class);
+            for (Object row : rows) setter.setValues(statement, row);
+            
+            ArgumentCaptor<String> names = ArgumentCaptor.forClass(String.class);
+            verify(statement, atLeastOnce()).setString(eq(2), names.capture());
+            if (names.getAllValues().contains("Broken product")) {
+                throw new DataIntegrityViolationException("duplicate key");
+            }
+            return new int[][]{{1}};
+        });
+        
+        ProductImportResultTO result = this.importCsv(
+            HEADER +
+                "Laptop M1,999.99,5,Laptop with 16GB of memory\n" +
+                "Broken product,10,1,Row rejected by the database\n"
+        );
+        
+        assertThat(result.getImported()).isEqualTo(1);
+        assertThat(result.getFailed()).isEqualTo(1);
+        assertThat(result.getErrors()).singleElement().satisfies((error) -> {
+            assertThat(error.getRow()).isEqualTo(2L);
+            assertThat(error.getName()).isEqualTo("Broken product");
+        });
+    }
+    
+    @Test
+    void spreadsStockOfSplitProductsAcrossShards() {
+        UUID splitId = UUID.randomUUID();
+        // "Laptop M1" already exists with its stock split in 4 shards; "Mouse" is new.
+        doAnswer((call) -> {
+            ResultSet result = mock(ResultSet.class);
+            when(result.getString("name")).thenReturn("Laptop M1");
+            when(result.getObject("product_id", UUID.class)).thenReturn(splitId);
+            when(result.getInt("stock_shards")).thenReturn(4);
+            call.<RowCallbackHandler>getArgument(1).processRow(result);
+            return null;
+        }).when(jdbcTemplate).query(
+            anyString(), any(RowCallbackHandler.class), any(Object[].class));
+        
+        ProductImportResultTO result = this.importCsv(
+            HEADER +
+                "Laptop M1,999.99,12,Laptop with 16GB of memory\n" +
+                "Mouse,19.5,40,Wireless mouse with USB receiver\n"
+        );
+        
+        assertThat(result.getImported()).isEqualTo(2);
+        verify(stockShardService).split(splitId, 4, 12);
+    }
+    
+    @Test
+    void reportsWhereMalformedCsvStopped() {
+        ProductImportResultTO result = this.importCsv(
+            HEADER +
+                "Laptop M1,999.99,5,Laptop with 16GB of memory\n" +
+                "\"Unclosed,10,1,Quote never closed\n"
+        );
+        
+        assertThat(result.getImported()).isEqualTo(1);
+        assertThat(result.getErrors()).singleElement().satisfies((error) -> {
+            assertThat(error.getRow()).isEqualTo(2L);
+            assertThat(error.getTitle()).isEqualTo(APIError.BAD_FORMAT.getTitle());
+        });
+    }
+    
+    @Test
+    void truncatesErrorReport() {
+        ReflectionTestUtils.setField(importService, "maxErrors", 1);
+        
+        ProductImportResultTO result = this.importCsv(HEADER + "A,x,1,\nB,y,1,\nC,z,1,\n");
+        
+        assertThat(result.getFailed()).isEqualTo(3);
+        assertThat(result.getErrors()).hasSize(1);
+        assertThat(result.getErrorsTruncated()).isTrue();
+        verify(productCache, never()).evictAll();
+    }
+    
+    @Test
+    void rejectsCsvWithoutHeader() {
+        assertThatThrownBy(() -> this.importCsv("Laptop M1,999.99,5,Laptop\n"))
+            .isInstanceOf(APIRequestException.class)
+            .extracting("apiError").isEqualTo(APIError.BAD_REQUEST);
+    }
+    
+    @Test
+    void importsNdjson() {
+        String body =
+            "{\"name\":\"Laptop M1\",\"price\":999.99,\"stock\":5," +
+                "\"description\":\"Laptop with 16GB of memory\"}\n" +
+                "\n" +
+                "not json\n";
+        
+        ProductImportResultTO result = importService.importProducts(
+            new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)),
+            ProductImportService.APPLICATION_NDJSON
+        );
+        
+        assertThat(result.getRows()).isEqualTo(2);
+        assertThat(result.getImported()).isEqualTo(1);
+        assertThat(result.getErrors()).extracting(ProductImportErrorTO::getRow)
+                                      .containsExactly(2L);
+    }
+    
+    private ProductImportResultTO importCsv(String csv) {
+        return importService.importProducts(
+            new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)),
+            ProductImportService.TEXT_CSV
+        );
+    }
+}
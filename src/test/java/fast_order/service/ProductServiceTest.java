@@ -0,0 +1,144 @@
+package fast_order.service;
+
+import fast_order.commons.enums.APIError;
+import fast_order.dto.ProductTO;
+import fast_order.dto.SlicePageTO;
+import fast_order.entity.ProductEntity;
+import fast_order.exception.APIRequestException;
+import fast_order.mapper.ProductMapperImpl;
+import fast_order.repository.ProductRepository;
+import fast_order.service.inventory.InventoryLedger;
+import fast_order.service.inventory.StockShardService;
+import fast_order.service.search.ProductSuggestIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ProductServiceTest {
+    private final UUID productId = UUID.randomUUID();
+    
+    private ProductRepository productRepository;
+    private ProductService productService;
+    
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        productRepository = mock(ProductRepository.class);
+        ObjectProvider<InventoryLedger> noLedger = mock(ObjectProvider.class);
+        
+        ProductCache productCache = new ProductCache(
+            new SimpleMeterRegistry(), false, 100L, Duration.ofMinutes(1), Duration.ofSeconds(1));
+        productService = new ProductService(
+            productRepository, new ProductMapperImpl(), mock(StockShardService.class),
+            productCache, mock(ProductSuggestIndex.class), noLedger, Duration.ofMinutes(1)
+        );
+        ReflectionTestUtils.setField(productService, "fullTextSearch", true);
+        ReflectionTestUtils.setField(productService, "approximateCountEnabled", true);
+        
+        when(productRepository.findById(productId)).thenReturn(Optional.of(this.stored(5L)));
+        when(productRepository.saveAndFlush(any(ProductEntity.class)))
+            .thenAnswer((call) -> call.getArgument(0));
+    }
+    
+    @Test
+    void updateKeepsStoredVersionWithoutIfMatch() {
+        productService.updateProduct(productId, this.update(null));
+        
+        assertThat(this.savedVersion()).isEqualTo(5L);
+    }
+    
+    @Test
+    void updateChecksVersionFromIfMatch() {
+        productService.updateProduct(productId, this.update(4L));
+        
+        assertThat(this.savedVersion()).isEqualTo(4L);
+    }
+    
+    @Test
+    void updateWithStaleIfMatchIsConflict() {
+        when(productRepository.saveAndFlush(any(ProductEntity.class)))
+            .thenThrow(new ObjectOptimisticLockingFailureException(ProductEntity.class, productId));
+        ProductTO update = this.update(4L);
+        
+        assertThatThrownBy(() -> productService.updateProduct(productId, update))
+            .isInstanceOf(APIRequestException.class)
+            .extracting("apiError").isEqualTo(APIError.RESOURCE_CONFLICT);
+    }
+    
+    @Test
+    @SuppressWarnings("unchecked")
+    void unfilteredSliceIsEstimatedOncePerTtl() {
+        when(productRepository.findSlice(any(Specification.class), any()))
+            .thenReturn(new SliceImpl<>(List.of()));
+        when(productRepository.estimateCount()).thenReturn(120L);
+        
+        productService.findProductSlice(PageRequest.of(0, 20), new HashMap<>());
+        SlicePageTO<ProductTO> slice =
+            productService.findProductSlice(PageRequest.of(0, 20), new HashMap<>());
+        
+        assertThat(slice.approximateTotal()).isEqualTo(120L);
+        verify(productRepository).estimateCount();
+    }
+    
+    @Test
+    @SuppressWarnings("unchecked")
+    void filteredSliceHasNoTotal() {
+        when(productRepository.findSlice(any(Specification.class), any()))
+            .thenReturn(new SliceImpl<>(List.of()));
+        Map<String, String> keywords = new HashMap<>(Map.of("name", "keyboard"));
+        
+        SlicePageTO<ProductTO> slice =
+            productService.findProductSlice(PageRequest.of(0, 20), keywords);
+        
+        assertThat(slice.approximateTotal()).isNull();
+        verify(productRepository, never()).count(any(Specification.class));
+        verify(productRepository, never()).estimateCount();
+    }
+    
+    private Long savedVersion() {
+        ArgumentCaptor<ProductEntity> saved = ArgumentCaptor.forClass(ProductEntity.class);
+        verify(productRepository).saveAndFlush(saved.capture());
+        return saved.getValue().getVersion();
+    }
+    
+    private ProductEntity stored(Long version) {
+        ProductEntity product = new ProductEntity();
+        product.setId(productId);
+        product.setName("Keyboard");
+        product.setPrice(50.0);
+        product.setStock(10);
+        product.setVersion(version);
+        return product;
+    }
+    
+    private ProductTO update(Long version) {
+        ProductTO product = new ProductTO();
+        product.setName("Mechanical keyboard");
+        product.setPrice(80.0);
+        product.setStock(10);
+        product.setVersion(version);
+        return product;
+    }
+}
@@ -0,0 +1,176 @@
+package fast_order.service.inventory;
+
+import fast_order.entity.InventoryJournalEntity;
+import fast_order.repository.InventoryJournalRepository;
+import fast_order.repository.ProductRepository;
+import fast_order.service.ProductCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class InventoryLedgerTest {
+    private final UUID productId = UUID.randomUUID();
+    
+    private InventoryJournalRepository journalRepository;
+    private ProductRepository productRepository;
+    private ProductCache productCache;
+    private InventoryLedger ledger;
+    
+    @BeforeEach
+    void setUp() {
+        journalRepository = mock(InventoryJournalRepository.class);
+        productRepository = mock(ProductRepository.class);
+        productCache = mock(ProductCache.class);
+        
+        ledger = new InventoryLedger(
+            journalRepository, productRepository, productCache,
+            mock(PlatformTransactionManager.class), new SimpleMeterRegistry()
+        );
+        ReflectionTestUtils.setField(ledger, "flushBatchSize", 100);
+        
+        when(journalRepository.findLedgerStock(productId)).thenReturn(Optional.of(10L));
+        when(journalRepository.findNextBatch(any(Pageable.class))).thenReturn(List.of());
+    }
+    
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+    }
+    
+    @Test
+    void reserveRequiresTransaction() {
+        assertThatThrownBy(() -> ledger.reserve(productId, 1))
+            .isInstanceOf(IllegalStateException.class);
+    }
+    
+    @Test
+    void reserveKeepsStockOnCommit() {
+        this.beginTransaction();
+        
+        assertThat(ledger.reserve(productId, 4)).isTrue();
+        assertThat(ledger.currentStock(productId)).hasValue(6);
+        
+        this.complete(TransactionSynchronization.STATUS_COMMITTED);
+        assertThat(ledger.currentStock(productId)).hasValue(6);
+        
+        ArgumentCaptor<InventoryJournalEntity> journal =
+            ArgumentCaptor.forClass(InventoryJournalEntity.class);
+        verify(journalRepository).save(journal.capture());
+        assertThat(journal.getValue().getDelta()).isEqualTo(-4);
+    }
+    
+    @Test
+    void reserveGivesStockBackOnRollback() {
+        this.beginTransaction();
+        
+        assertThat(ledger.reserve(productId, 4)).isTrue();
+        this.complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+        
+        assertThat(ledger.currentStock(productId)).hasValue(10);
+    }
+    
+    @Test
+    void reserveRejectsMoreThanAvailable() {
+        this.beginTransaction();
+        
+        assertThat(ledger.reserve(productId, 11)).isFalse();
+        assertThat(ledger.currentStock(productId)).hasValue(10);
+        verify(journalRepository, never()).save(any());
+    }
+    
+    @Test
+    void adjustAddsOnlyAfterCommit() {
+        this.beginTransaction();
+        
+        ledger.adjust(productId, 5);
+        assertThat(ledger.currentStock(productId)).hasValue(10);
+        
+        this.complete(TransactionSynchronization.STATUS_COMMITTED);
+        assertThat(ledger.currentStock(productId)).hasValue(15);
+    }
+    
+    @Test
+    void adjustRemovesDownToZero() {
+        this.beginTransaction();
+        
+        ledger.adjust(productId, -15);
+        assertThat(ledger.currentStock(productId)).hasValue(0);
+        
+        ArgumentCaptor<InventoryJournalEntity> journal =
+            ArgumentCaptor.forClass(InventoryJournalEntity.class);
+        verify(journalRepository).save(journal.capture());
+        assertThat(journal.getValue().getDelta()).isEqualTo(-10);
+        
+        this.complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+        assertThat(ledger.currentStock(productId)).hasValue(10);
+    }
+    
+    @Test
+    void flushFoldsJournalIntoProducts() {
+        UUID otherId = UUID.randomUUID();
+        List<InventoryJournalEntity> batch = List.of(
+            this.entry(productId, -4),
+            this.entry(otherId, 3),
+            this.entry(productId, -2),
+            this.entry(otherId, -3)
+        );
+        when(journalRepository.findNextBatch(any(Pageable.class))).thenReturn(batch, List.of());
+        
+        ledger.start();
+        
+        verify(productRepository).applyStockDelta(productId, -6);
+        verify(productRepository, never()).applyStockDelta(otherId, 0);
+        verify(productCache).evict(productId);
+        verify(journalRepository).deleteAllInBatch(batch);
+    }
+    
+    @Test
+    void flushIsSkippedWhenNotRunning() {
+        ledger.flush();
+        
+        verify(journalRepository, never()).findNextBatch(any(Pageable.class));
+    }
+    
+    private void beginTransaction() {
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+    }
+    
+    private void complete(int status) {
+        List<TransactionSynchronization> synchronizations =
+            TransactionSynchronizationManager.getSynchronizations();
+        if (status == TransactionSynchronization.STATUS_COMMITTED) {
+            synchronizations.forEach(TransactionSynchronization::afterCommit);
+        }
+        synchronizations.forEach((synchronization) -> synchronization.afterCompletion(status));
+        
+        TransactionSynchronizationManager.clearSynchronization();
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+    }
+    
+    private InventoryJournalEntity entry(UUID id, int delta) {
+        return InventoryJournalEntity.builder().productId(id).delta(delta).build();
+    }
+}
@@ -0,0 +1,118 @@
+package fast_order.service.inventory;
+
+import fast_order.entity.ProductStockShardEntity;
+import fast_order.repository.ProductRepository;
+import fast_order.repository.ProductStockShardRepository;
+import fast_order.repository.ProductStockShardRepository.ShardStock;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StockShardServiceTest {
+    private final UUID productId = UUID.randomUUID();
+    
+    private ProductRepository productRepository;
+    private ProductStockShardRepository shardRepository;
+    private StockShardService stockShardService;
+    
+    @BeforeEach
+    void setUp() {
+        productRepository = mock(ProductRepository.class);
+        shardRepository = mock(ProductStockShardRepository.class);
+        stockShardService = new StockShardService(productRepository, shardRepository);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+    
+    @Test
+    void unsplitProductReservesFromProductRow() {
+        when(productRepository.findStockShards(productId)).thenReturn(Optional.of(1));
+        when(productRepository.decreaseProductStock(productId, 3)).thenReturn(1);
+        
+        assertThat(stockShardService.reserve(productId, 3)).isTrue();
+        verify(shardRepository, never()).decreaseShardStock(eq(productId), anyInt(), anyInt());
+    }
+    
+    @Test
+    void splitProductReservesFromOneShard() {
+        when(productRepository.findStockShards(productId)).thenReturn(Optional.of(4));
+        when(shardRepository.decreaseShardStock(eq(productId), anyInt(), eq(3))).thenReturn(1);
+        
+        assertThat(stockShardService.reserve(productId, 3)).isTrue();
+        verify(shardRepository).decreaseShardStock(eq(productId), anyInt(), eq(3));
+        verify(productRepository, never()).decreaseProductStock(productId, 3);
+    }
+    
+    @Test
+    void reservesAcrossRowsWhenNoSingleRowHasEnough() {
+        when(productRepository.findStockShards(productId)).thenReturn(Optional.of(2));
+        when(productRepository.lockStock(productId)).thenReturn(Optional.of(2));
+        when(shardRepository.lockShards(productId)).thenReturn(List.of(
+            this.shard(0, 1), this.shard(1, 3)));
+        
+        assertThat(stockShardService.reserve(productId, 4)).isTrue();
+        verify(productRepository).applyStockDelta(productId, -2);
+        verify(shardRepository).decreaseShardStock(productId, 0, 1);
+        verify(shardRepository).decreaseShardStock(productId, 1, 1);
+    }
+    
+    @Test
+    void rejectsReservationAboveTotalStock() {
+        when(productRepository.findStockShards(productId)).thenReturn(Optional.of(2));
+        when(productRepository.lockStock(productId)).thenReturn(Optional.of(2));
+        when(shardRepository.lockShards(productId)).thenReturn(List.of(
+            this.shard(0, 1), this.shard(1, 3)));
+        
+        assertThat(stockShardService.reserve(productId, 7)).isFalse();
+        verify(productRepository, never()).applyStockDelta(eq(productId), anyInt());
+    }
+    
+    @Test
+    @SuppressWarnings("unchecked")
+    void splitSpreadsStockEvenly() {
+        TransactionSynchronizationManager.initSynchronization();
+        when(productRepository.lockStock(productId)).thenReturn(Optional.of(0));
+        when(shardRepository.lockShards(productId)).thenReturn(List.of());
+        
+        assertThat(stockShardService.split(productId, 3, 10)).isTrue();
+        
+        ArgumentCaptor<List<ProductStockShardEntity>> rows = ArgumentCaptor.forClass(List.class);
+        verify(shardRepository).saveAll(rows.capture());
+        assertThat(rows.getValue()).extracting(ProductStockShardEntity::getStock)
+                                   .containsExactly(4, 3, 3);
+        verify(productRepository).updateStockShards(productId, 0, 3);
+    }
+    
+    private ShardStock shard(int shard, int stock) {
+        return new ShardStock() {
+            @Override
+            public Integer getShard() {
+                return shard;
+            }
+            
+            @Override
+            public Integer getStock() {
+                return stock;
+            }
+        };
+    }
+}
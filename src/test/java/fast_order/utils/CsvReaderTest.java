@@ -0,0 +1,62 @@
+package fast_order.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CsvReaderTest {
+    @Test
+    void readsPlainRecords() throws IOException {
+        assertThat(this.readAll("name,price\nLaptop,10.5\n")).containsExactly(
+            List.of("name", "price"),
+            List.of("Laptop", "10.5")
+        );
+    }
+    
+    @Test
+    void readsQuotedFields() throws IOException {
+        assertThat(this.readAll("\"Laptop, 14\"\"\",\"two\nlines\"")).containsExactly(
+            List.of("Laptop, 14\"", "two\nlines")
+        );
+    }
+    
+    @Test
+    void keepsEmptyFields() throws IOException {
+        assertThat(this.readAll(",a,,\n")).containsExactly(List.of("", "a", "", ""));
+    }
+    
+    @Test
+    void acceptsCrlfAndSkipsBlankLines() throws IOException {
+        assertThat(this.readAll("a,b\r\n\r\n\nc,d\r\n")).containsExactly(
+            List.of("a", "b"),
+            List.of("c", "d")
+        );
+    }
+    
+    @Test
+    void keepsSpacesAroundFields() throws IOException {
+        assertThat(this.readAll(" a , b")).containsExactly(List.of(" a ", " b"));
+    }
+    
+    @Test
+    void rejectsUnclosedQuote() {
+        assertThatThrownBy(() -> this.readAll("a,\"b\nc"))
+            .isInstanceOf(IOException.class)
+            .hasMessageContaining("Unclosed");
+    }
+    
+    private List<List<String>> readAll(String text) throws IOException {
+        CsvReader csv = new CsvReader(new StringReader(text));
+        List<List<String>> records = new ArrayList<>();
+        
+        List<String> record;
+        while ((record = csv.readRecord()) != null) records.add(record);
+        return records;
+    }
+}
@@ -0,0 +1,30 @@
+package fast_order.utils;
+
+import fast_order.commons.enums.APIError;
+import fast_order.exception.APIRequestException;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ETagUtilsTest {
+    @Test
+    void parsesStrongAndWeakTags() {
+        assertThat(ETagUtils.parseIfMatch("\"3\"")).isEqualTo(3L);
+        assertThat(ETagUtils.parseIfMatch(" W/\"3\" ")).isEqualTo(3L);
+    }
+    
+    @Test
+    void ignoresMissingOrAnyTag() {
+        assertThat(ETagUtils.parseIfMatch(null)).isNull();
+        assertThat(ETagUtils.parseIfMatch(" ")).isNull();
+        assertThat(ETagUtils.parseIfMatch("*")).isNull();
+    }
+    
+    @Test
+    void rejectsForeignTag() {
+        assertThatThrownBy(() -> ETagUtils.parseIfMatch("\"abc\""))
+            .isInstanceOf(APIRequestException.class)
+            .extracting("apiError").isEqualTo(APIError.BAD_REQUEST);
+    }
+}